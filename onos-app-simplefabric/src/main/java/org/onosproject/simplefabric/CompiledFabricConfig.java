@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onosproject.simplefabric;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.onlab.packet.IpPrefix;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable compiled form of SimpleFabricConfig with prebuilt lookup tables,
+ * kept with a copy of the config json node it is compiled from.
+ */
+public final class CompiledFabricConfig {
+
+    private final JsonNode node;
+    private final Set<L2Network> l2Networks;
+    private final Set<IpSubnet> ipSubnets;
+    private final IpPrefixTrie<IpSubnet> ipSubnetTable;
+    private final Set<Route> borderRoutes;
+    private final Map<IpPrefix, Route> borderRouteMap;
+
+    private CompiledFabricConfig(SimpleFabricConfig config) {
+        node = config.node().deepCopy();
+        l2Networks = ImmutableSet.copyOf(config.getL2Networks());
+        ipSubnets = ImmutableSet.copyOf(config.ipSubnets());
+        borderRoutes = ImmutableSet.copyOf(config.borderRoutes());
+
+        IpPrefixTrie.Builder<IpSubnet> ipSubnetTableBuilder = IpPrefixTrie.builder();
+        for (IpSubnet subnet : ipSubnets) {
+            ipSubnetTableBuilder.put(subnet.ipPrefix(), subnet);
+        }
+        ipSubnetTable = ipSubnetTableBuilder.build();
+
+        Map<IpPrefix, Route> routeMap = new HashMap<>();
+        for (Route route : borderRoutes) {
+            routeMap.put(route.prefix(), route);
+        }
+        borderRouteMap = ImmutableMap.copyOf(routeMap);
+    }
+
+    /**
+     * Compiles the config.
+     *
+     * @param config the simple fabric config
+     * @return the compiled config
+     */
+    public static CompiledFabricConfig of(SimpleFabricConfig config) {
+        return new CompiledFabricConfig(config);
+    }
+
+    /**
+     * Evaluates whether this is compiled from the same content of the config.
+     *
+     * @param config the simple fabric config
+     * @return true if the config json node is equal to the compiled one
+     */
+    public boolean isCompiledFrom(SimpleFabricConfig config) {
+        return node.equals(config.node());
+    }
+
+    /**
+     * Gets the l2Network configs; interfaces and hosts are not filled.
+     *
+     * @return the immutable set of l2Network configs
+     */
+    public Set<L2Network> l2Networks() {
+        return l2Networks;
+    }
+
+    /**
+     * Gets the ip subnets.
+     *
+     * @return the immutable set of ip subnets
+     */
+    public Set<IpSubnet> ipSubnets() {
+        return ipSubnets;
+    }
+
+    /**
+     * Gets the prefix trie of the ip subnets.
+     *
+     * @return the ip subnet table
+     */
+    public IpPrefixTrie<IpSubnet> ipSubnetTable() {
+        return ipSubnetTable;
+    }
+
+    /**
+     * Gets the border routes.
+     *
+     * @return the immutable set of border routes
+     */
+    public Set<Route> borderRoutes() {
+        return borderRoutes;
+    }
+
+    /**
+     * Gets the border routes by prefix.
+     *
+     * @return the immutable map of prefix to border route
+     */
+    public Map<IpPrefix, Route> borderRouteMap() {
+        return borderRouteMap;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.simplefabric;
+
+import com.google.common.base.MoreObjects;
+import org.onlab.packet.VlanId;
+import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.Host;
+import org.onosproject.net.intf.Interface;
+
+import java.util.Objects;
+
+/**
+ * Lookup key of an interface or a host attachment by ConnectPoint and VlanId.
+ */
+public final class ConnectPointVlan {
+
+    private final ConnectPoint connectPoint;
+    private final VlanId vlanId;
+
+    private ConnectPointVlan(ConnectPoint connectPoint, VlanId vlanId) {
+        this.connectPoint = connectPoint;
+        this.vlanId = vlanId;
+    }
+
+    /**
+     * Creates a key of ConnectPoint and VlanId.
+     *
+     * @param connectPoint the ConnectPoint
+     * @param vlanId the VlanId; null is regarded as VlanId.NONE
+     * @return the key
+     */
+    public static ConnectPointVlan of(ConnectPoint connectPoint, VlanId vlanId) {
+        Objects.requireNonNull(connectPoint);
+        // NOTE: HostLocation also compares timestamp in equals(); use plain ConnectPoint as key
+        if (connectPoint.getClass() != ConnectPoint.class) {
+            connectPoint = new ConnectPoint(connectPoint.elementId(), connectPoint.port());
+        }
+        return new ConnectPointVlan(connectPoint, (vlanId != null) ? vlanId : VlanId.NONE);
+    }
+
+    /**
+     * Creates a key of the interface.
+     *
+     * @param iface the interface
+     * @return the key
+     */
+    public static ConnectPointVlan of(Interface iface) {
+        return of(iface.connectPoint(), iface.vlan());
+    }
+
+    /**
+     * Creates a key of the host location.
+     *
+     * @param host the host
+     * @return the key
+     */
+    public static ConnectPointVlan of(Host host) {
+        return of(host.location(), host.vlan());
+    }
+
+    /**
+     * Gets the ConnectPoint.
+     *
+     * @return the ConnectPoint
+     */
+    public ConnectPoint connectPoint() {
+        return connectPoint;
+    }
+
+    /**
+     * Gets the VlanId.
+     *
+     * @return the VlanId
+     */
+    public VlanId vlanId() {
+        return vlanId;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(connectPoint, vlanId);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof ConnectPointVlan)) {
+            return false;
+        }
+        ConnectPointVlan that = (ConnectPointVlan) obj;
+        return Objects.equals(this.connectPoint, that.connectPoint)
+               && Objects.equals(this.vlanId, that.vlanId);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(getClass())
+                .add("connectPoint", connectPoint)
+                .add("vlanId", vlanId)
+                .toString();
+    }
+}
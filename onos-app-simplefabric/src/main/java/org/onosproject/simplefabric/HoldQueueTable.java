@@ -0,0 +1,207 @@
+/*
+ * Copyright 2017-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onosproject.simplefabric;
+
+import org.onlab.packet.IpAddress;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Packets held per unresolved next hop ip in arrival order; thread safe.
+ * Bounded by the number of next hops and by packets and bytes per next hop;
+ * packets held longer than ttl are dropped. Times are given by caller.
+ *
+ * @param <T> the packet type
+ */
+final class HoldQueueTable<T> {
+
+    /**
+     * Results of holding a packet.
+     */
+    enum HoldResult {
+        HELD_FIRST,  // held on a new queue of the next hop
+        HELD,        // held on the existing queue of the next hop
+        DROPPED      // dropped over the caps
+    }
+
+    private final int maxNextHops;
+    private final int maxPackets;
+    private final int maxBytes;
+    private final long ttlMsec;
+    private final ToIntFunction<T> sizeOf;
+
+    private final Map<IpAddress, HoldQueue<T>> queues = new HashMap<>();  // guarded by this
+    private long holdCount = 0;      // guarded by this
+    private long releaseCount = 0;   // guarded by this
+    private long overflowCount = 0;  // guarded by this
+    private long expireCount = 0;    // guarded by this
+
+    /**
+     * Creates a hold queue table.
+     *
+     * @param maxNextHops the max number of next hops with hold queue
+     * @param maxPackets the max number of packets per next hop
+     * @param maxBytes the max bytes of packets per next hop
+     * @param ttlMsec the max hold time of a packet in milliseconds
+     * @param sizeOf gives the size of a packet in bytes
+     */
+    HoldQueueTable(int maxNextHops, int maxPackets, int maxBytes, long ttlMsec, ToIntFunction<T> sizeOf) {
+        this.maxNextHops = maxNextHops;
+        this.maxPackets = maxPackets;
+        this.maxBytes = maxBytes;
+        this.ttlMsec = ttlMsec;
+        this.sizeOf = sizeOf;
+    }
+
+    /**
+     * Holds the packet on the queue of the next hop, if within the caps after expiry.
+     *
+     * @param nextHopIp the unresolved next hop ip
+     * @param packet the packet to hold
+     * @param now the current time in milliseconds
+     * @return the hold result
+     */
+    synchronized HoldResult hold(IpAddress nextHopIp, T packet, long now) {
+        HoldQueue<T> queue = queues.get(nextHopIp);
+        if (queue != null) {
+            expireCount += queue.expire(now, ttlMsec);
+        }
+        int size = sizeOf.applyAsInt(packet);
+        if ((queue == null && queues.size() >= maxNextHops)
+                || (queue != null && queue.packets.size() >= maxPackets)
+                || (queue != null ? queue.bytes : 0) + size > maxBytes) {
+            overflowCount++;
+            return HoldResult.DROPPED;
+        }
+        HoldResult result = HoldResult.HELD;
+        if (queue == null) {
+            queue = new HoldQueue<>();
+            queues.put(nextHopIp, queue);
+            result = HoldResult.HELD_FIRST;
+        }
+        queue.add(packet, size, now);
+        holdCount++;
+        return result;
+    }
+
+    /**
+     * Removes the queues of the ips and returns their unexpired packets in arrival order per ip.
+     *
+     * @param ips the resolved ips
+     * @param now the current time in milliseconds
+     * @return the released packets
+     */
+    synchronized List<T> release(Collection<IpAddress> ips, long now) {
+        List<T> packets = new ArrayList<>();
+        for (IpAddress ip : ips) {
+            HoldQueue<T> queue = queues.remove(ip);
+            if (queue != null) {
+                expireCount += queue.expire(now, ttlMsec);
+                for (Held<T> held : queue.packets) {
+                    packets.add(held.packet);
+                }
+            }
+        }
+        releaseCount += packets.size();
+        return packets;
+    }
+
+    /**
+     * Drops expired packets and empty queues.
+     *
+     * @param now the current time in milliseconds
+     */
+    synchronized void expire(long now) {
+        for (HoldQueue<T> queue : queues.values()) {
+            expireCount += queue.expire(now, ttlMsec);
+        }
+        queues.values().removeIf(queue -> queue.packets.isEmpty());
+    }
+
+    /**
+     * Drops all held packets.
+     */
+    synchronized void clear() {
+        queues.clear();
+    }
+
+    /**
+     * Returns the number of next hops with hold queue.
+     *
+     * @return the number of next hops
+     */
+    synchronized int nextHopCount() {
+        return queues.size();
+    }
+
+    /**
+     * Returns the number of packets held.
+     *
+     * @return the number of packets
+     */
+    synchronized int packetCount() {
+        return queues.values().stream().mapToInt(queue -> queue.packets.size()).sum();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "nextHops=" + queues.size() + " packets=" + packetCount()
+                + " held=" + holdCount + " released=" + releaseCount
+                + " overflowDropped=" + overflowCount + " expiredDropped=" + expireCount;
+    }
+
+    // Held packet with its size and hold time
+    private static final class Held<T> {
+        private final T packet;
+        private final int size;
+        private final long holdTime;
+
+        private Held(T packet, int size, long holdTime) {
+            this.packet = packet;
+            this.size = size;
+            this.holdTime = holdTime;
+        }
+    }
+
+    // Held packets of a next hop in arrival order; guarded by the table
+    private static final class HoldQueue<T> {
+        private final Deque<Held<T>> packets = new ArrayDeque<>();
+        private int bytes = 0;
+
+        private void add(T packet, int size, long now) {
+            packets.addLast(new Held<>(packet, size, now));
+            bytes += size;
+        }
+
+        // returns number of expired packets removed
+        private int expire(long now, long ttlMsec) {
+            int expired = 0;
+            while (!packets.isEmpty() && now - packets.peekFirst().holdTime > ttlMsec) {
+                bytes -= packets.removeFirst().size;
+                expired++;
+            }
+            return expired;
+        }
+    }
+}
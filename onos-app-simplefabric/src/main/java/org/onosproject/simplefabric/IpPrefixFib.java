@@ -0,0 +1,518 @@
+/*
+ * Copyright 2017-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onosproject.simplefabric;
+
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.IpPrefix;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Multibit trie FIB for longest prefix match of IPv4 and IPv6 addresses,
+ * supporting bulk load and incremental put and remove for full table scale.
+ *
+ * IPv4 uses 16-8-8 bit strides and IPv6 uses a 16 bit stride followed by 4 bit strides.
+ * Prefixes are stored by controlled prefix expansion within the level of its length.
+ * Updates are serialized by the instance lock. Lookups take no lock and allocate nothing
+ * on raw address words; a lookup concurrent to an update sees each slot either before
+ * or after the update.
+ *
+ * @param <V> the value type of prefix entries
+ */
+public final class IpPrefixFib<V> {
+
+    private static final int[] IP4_STRIDES = {16, 8, 8};
+    private static final int[] IP6_STRIDES = {16, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4,
+                                              4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4, 4};
+
+    private static final int INITIAL_NODES = 4;
+    private static final int INITIAL_ENTRIES = 16;
+
+    // per slot memory: value int + child int + length byte
+    private static final int SLOT_BYTES = Integer.BYTES + Integer.BYTES + Byte.BYTES;
+    private static final int REFERENCE_BYTES = 8;
+
+    // tables published to lookups; replaced after every update
+    private volatile Tables tables;
+
+    // writer side states; guarded by the instance lock
+    private Table ip4Table = new Table(IP4_STRIDES);
+    private Table ip6Table = new Table(IP6_STRIDES);
+    private Object[] entryValues = new Object[INITIAL_ENTRIES];
+    private Map<IpPrefix, Integer> entryIndexMap = new HashMap<>();
+    private ArrayDeque<Integer> freeEntries = new ArrayDeque<>();
+    private int entryCount = 0;
+
+    /**
+     * Creates an empty FIB.
+     */
+    public IpPrefixFib() {
+        publish();
+    }
+
+    /**
+     * Replaces all prefix entries with the given entries.
+     * The new table is built aside and published at once.
+     *
+     * @param entries the prefix entries
+     */
+    public synchronized void load(Map<IpPrefix, V> entries) {
+        Table newIp4Table = new Table(IP4_STRIDES);
+        Table newIp6Table = new Table(IP6_STRIDES);
+        Object[] newEntryValues = new Object[Math.max(INITIAL_ENTRIES, entries.size())];
+        Map<IpPrefix, Integer> newEntryIndexMap = new HashMap<>();
+
+        // put shorter prefix first; longer prefixes overwrite its expanded slots
+        List<IpPrefix> prefixes = new ArrayList<>(entries.keySet());
+        prefixes.sort(Comparator.comparingInt(IpPrefix::prefixLength));
+        for (IpPrefix prefix : prefixes) {
+            int index = newEntryIndexMap.size();
+            newEntryValues[index] = Objects.requireNonNull(entries.get(prefix));
+            newEntryIndexMap.put(prefix, index);
+            (prefix.isIp4() ? newIp4Table : newIp6Table).insert(prefix, index + 1);
+        }
+
+        entryValues = newEntryValues;
+        entryIndexMap = newEntryIndexMap;
+        freeEntries = new ArrayDeque<>();
+        entryCount = newEntryIndexMap.size();
+        ip4Table = newIp4Table;
+        ip6Table = newIp6Table;
+        publish();
+    }
+
+    /**
+     * Puts a prefix entry; the value of the same prefix is replaced.
+     *
+     * @param prefix the ip prefix
+     * @param value the value of the prefix
+     */
+    public synchronized void put(IpPrefix prefix, V value) {
+        Objects.requireNonNull(prefix);
+        Objects.requireNonNull(value);
+        Integer index = entryIndexMap.get(prefix);
+        if (index != null) {
+            entryValues[index] = value;  // same slots; just replace the value
+        } else {
+            index = allocEntry();
+            entryValues[index] = value;
+            entryIndexMap.put(prefix, index);
+            (prefix.isIp4() ? ip4Table : ip6Table).insert(prefix, index + 1);
+        }
+        publish();
+    }
+
+    /**
+     * Removes a prefix entry.
+     *
+     * @param prefix the ip prefix to be removed
+     * @return true if the prefix entry existed
+     */
+    public synchronized boolean remove(IpPrefix prefix) {
+        Integer index = entryIndexMap.remove(prefix);
+        if (index == null) {
+            return false;
+        }
+        Table table = prefix.isIp4() ? ip4Table : ip6Table;
+        int replaceEntry = 0;
+        int replaceLength = 0;
+        // the longest shorter prefix stored in the same level takes over the expanded slots
+        for (int length = prefix.prefixLength() - 1; length >= table.minLengthOfLevel(prefix); length--) {
+            Integer coverIndex = entryIndexMap.get(IpPrefix.valueOf(prefix.address(), length));
+            if (coverIndex != null) {
+                replaceEntry = coverIndex + 1;
+                replaceLength = length;
+                break;
+            }
+        }
+        table.delete(prefix, replaceEntry, replaceLength);
+        entryValues[index] = null;
+        freeEntries.addLast(index);
+        entryCount--;
+        publish();
+        return true;
+    }
+
+    // volatile write of new tables makes all preceding updates visible to lookups
+    private void publish() {
+        tables = new Tables(ip4Table, ip6Table, entryValues, entryCount);
+    }
+
+    /**
+     * Gets the number of prefix entries.
+     *
+     * @return the number of prefix entries
+     */
+    public int size() {
+        return tables.size;
+    }
+
+    /**
+     * Gets the memory allocated for the lookup tables in bytes;
+     * excludes the prefix and value objects.
+     *
+     * @return the allocated memory in bytes
+     */
+    public long memoryBytes() {
+        Tables t = tables;
+        return t.ip4.memoryBytes() + t.ip6.memoryBytes() + (long) t.values.length * REFERENCE_BYTES;
+    }
+
+    /**
+     * Finds the value of the longest prefix containing the ip address.
+     * Allocates the address octets; packet paths use the raw address word lookups.
+     *
+     * @param ip the ip address to be matched
+     * @return the value of the longest matching prefix or null
+     */
+    public V lookup(IpAddress ip) {
+        byte[] octets = ip.toOctets();
+        if (ip.isIp4()) {
+            return lookup4((int) word(octets, 0, 4));
+        } else {
+            return lookup6(word(octets, 0, 8), word(octets, 8, 8));
+        }
+    }
+
+    /**
+     * Finds the value of the longest prefix containing the address of raw address words.
+     *
+     * @param isIp4 true if the address is an IPv4 address
+     * @param addressHi the upper 64 bits of the IPv6 address, or the IPv4 address in the lower 32 bits
+     * @param addressLo the lower 64 bits of the IPv6 address; ignored for IPv4
+     * @return the value of the longest matching prefix or null
+     */
+    public V lookup(boolean isIp4, long addressHi, long addressLo) {
+        return isIp4 ? lookup4((int) addressHi) : lookup6(addressHi, addressLo);
+    }
+
+    /**
+     * Finds the value of the longest prefix containing the IPv4 address.
+     *
+     * @param address the IPv4 address as int in network byte order
+     * @return the value of the longest matching prefix or null
+     */
+    public V lookup4(int address) {
+        Tables t = tables;
+        return t.value(t.ip4.lookup(address & 0xffffffffL, 0L));
+    }
+
+    /**
+     * Finds the value of the longest prefix containing the IPv6 address.
+     *
+     * @param addressHi the upper 64 bits of the IPv6 address
+     * @param addressLo the lower 64 bits of the IPv6 address
+     * @return the value of the longest matching prefix or null
+     */
+    public V lookup6(long addressHi, long addressLo) {
+        Tables t = tables;
+        return t.value(t.ip6.lookup(addressHi, addressLo));
+    }
+
+    private int allocEntry() {
+        entryCount++;
+        if (!freeEntries.isEmpty()) {
+            return freeEntries.removeFirst();  // reuse oldest freed to keep stale lookups sane
+        }
+        int index = entryCount - 1;
+        if (index >= entryValues.length) {
+            entryValues = Arrays.copyOf(entryValues, entryValues.length * 2);
+        }
+        return index;
+    }
+
+    // big endian word of length bytes from offset
+    private static long word(byte[] octets, int offset, int length) {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            value = (value << 8) | (octets[i] & 0xff);
+        }
+        return value;
+    }
+
+    // Tables and entry values published together
+    private final class Tables {
+        private final Table ip4;
+        private final Table ip6;
+        private final Object[] values;
+        private final int size;
+
+        private Tables(Table ip4, Table ip6, Object[] values, int size) {
+            this.ip4 = ip4;
+            this.ip6 = ip6;
+            this.values = values;
+            this.size = size;
+        }
+
+        @SuppressWarnings("unchecked")
+        private V value(int entry) {
+            return (entry == 0 || entry > values.length) ? null : (V) values[entry - 1];
+        }
+    }
+
+    // Multibit trie of an address family
+    private static final class Table {
+        private final int addressBits;
+        private final Level[] levels;
+
+        private Table(int[] strides) {
+            levels = new Level[strides.length];
+            int offset = 0;
+            for (int i = 0; i < strides.length; i++) {
+                levels[i] = new Level(offset, strides[i]);
+                offset += strides[i];
+            }
+            addressBits = offset;
+            levels[0].allocNode();  // root node
+        }
+
+        // IPv4 address is given in lower 32 bits of hi word
+        private int lookup(long hi, long lo) {
+            int found = 0;
+            int node = 0;
+            for (int i = 0; i < levels.length; i++) {
+                Level level = levels[i];
+                Storage storage = level.storage;
+                int slot = (node << level.stride) | level.index(hi, lo, addressBits);
+                if (slot >= storage.values.length) {
+                    break;  // stale reference of concurrent growth
+                }
+                if (storage.values[slot] != 0) {
+                    found = storage.values[slot];
+                }
+                int child = storage.children[slot];
+                if (child == 0) {
+                    break;
+                }
+                node = child - 1;
+            }
+            return found;
+        }
+
+        private int levelOf(int prefixLength) {
+            for (int i = 0; i < levels.length; i++) {
+                if (prefixLength <= levels[i].offset + levels[i].stride) {
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException("invalid prefix length: " + prefixLength);
+        }
+
+        private int minLengthOfLevel(IpPrefix prefix) {
+            int level = levelOf(prefix.prefixLength());
+            return (level == 0) ? 0 : levels[level].offset + 1;
+        }
+
+        // walks down to the node of the prefix level; allocates missing nodes if create is set
+        // returns the node index or -1 if not found
+        private int findNode(long hi, long lo, int targetLevel, boolean create) {
+            int node = 0;
+            for (int i = 0; i < targetLevel; i++) {
+                Level level = levels[i];
+                int slot = (node << level.stride) | level.index(hi, lo, addressBits);
+                int child = level.storage.children[slot];
+                if (child == 0) {
+                    if (!create) {
+                        return -1;
+                    }
+                    // NOTE: child node is cleared before linked, so lookups see it empty
+                    child = levels[i + 1].allocNode() + 1;
+                    level.storage.children[slot] = child;
+                }
+                node = child - 1;
+            }
+            return node;
+        }
+
+        private void insert(IpPrefix prefix, int entry) {
+            long[] words = words(prefix);
+            int length = prefix.prefixLength();
+            int levelIndex = levelOf(length);
+            int node = findNode(words[0], words[1], levelIndex, true);
+            Level level = levels[levelIndex];
+            Storage storage = level.storage;
+            int first = (node << level.stride) | level.index(words[0], words[1], addressBits);
+            int count = 1 << (level.offset + level.stride - length);
+            first &= ~(count - 1);
+            for (int slot = first; slot < first + count; slot++) {
+                // keep slots expanded from longer prefixes
+                if (storage.values[slot] == 0 || (storage.lengths[slot] & 0xff) <= length) {
+                    storage.values[slot] = entry;
+                    storage.lengths[slot] = (byte) length;
+                }
+            }
+        }
+
+        private void delete(IpPrefix prefix, int replaceEntry, int replaceLength) {
+            long[] words = words(prefix);
+            int length = prefix.prefixLength();
+            int levelIndex = levelOf(length);
+            int node = findNode(words[0], words[1], levelIndex, false);
+            if (node < 0) {
+                return;
+            }
+            Level level = levels[levelIndex];
+            Storage storage = level.storage;
+            int first = (node << level.stride) | level.index(words[0], words[1], addressBits);
+            int count = 1 << (level.offset + level.stride - length);
+            first &= ~(count - 1);
+            for (int slot = first; slot < first + count; slot++) {
+                if (storage.values[slot] != 0 && (storage.lengths[slot] & 0xff) == length) {
+                    storage.values[slot] = replaceEntry;
+                    storage.lengths[slot] = (byte) replaceLength;
+                }
+            }
+            releaseEmptyNodes(words[0], words[1], levelIndex);
+        }
+
+        // frees empty nodes on the path from the bottom level up
+        private void releaseEmptyNodes(long hi, long lo, int bottomLevel) {
+            int[] path = new int[bottomLevel + 1];
+            int node = 0;
+            for (int i = 0; i < bottomLevel; i++) {
+                path[i] = node;
+                Level level = levels[i];
+                int child = level.storage.children[(node << level.stride) | level.index(hi, lo, addressBits)];
+                if (child == 0) {
+                    return;
+                }
+                node = child - 1;
+            }
+            path[bottomLevel] = node;
+            for (int i = bottomLevel; i > 0; i--) {
+                if (!levels[i].isEmptyNode(path[i])) {
+                    return;
+                }
+                Level parent = levels[i - 1];
+                parent.storage.children[(path[i - 1] << parent.stride) | parent.index(hi, lo, addressBits)] = 0;
+                levels[i].freeNode(path[i]);
+            }
+        }
+
+        private long memoryBytes() {
+            long bytes = 0;
+            for (Level level : levels) {
+                bytes += (long) level.storage.values.length * SLOT_BYTES;
+            }
+            return bytes;
+        }
+
+        // prefix address as two 64 bit words; IPv4 address is in lower 32 bits of hi word
+        private static long[] words(IpPrefix prefix) {
+            byte[] octets = prefix.address().toOctets();
+            if (prefix.isIp4()) {
+                return new long[] {word(octets, 0, 4), 0L};
+            }
+            return new long[] {word(octets, 0, 8), word(octets, 8, 8)};
+        }
+    }
+
+    // Nodes of a level; a node has (1 << stride) slots
+    private static final class Level {
+        private final int offset;
+        private final int stride;
+        private volatile Storage storage;
+        private int nodeCount = 0;
+        private final ArrayDeque<Integer> freeNodes = new ArrayDeque<>();
+
+        private Level(int offset, int stride) {
+            this.offset = offset;
+            this.stride = stride;
+            this.storage = new Storage(0);
+        }
+
+        // slot index within a node for the address bits of this level
+        private int index(long hi, long lo, int addressBits) {
+            int end = offset + stride;
+            long word;
+            int shift;
+            if (addressBits <= Long.SIZE) {
+                word = hi;
+                shift = addressBits - end;
+            } else if (end <= Long.SIZE) {
+                word = hi;
+                shift = Long.SIZE - end;
+            } else {
+                word = lo;
+                shift = 2 * Long.SIZE - end;
+            }
+            return (int) ((word >>> shift) & ((1L << stride) - 1));
+        }
+
+        private int allocNode() {
+            int node;
+            if (!freeNodes.isEmpty()) {
+                node = freeNodes.removeFirst();
+            } else {
+                node = nodeCount++;
+                int capacity = storage.values.length >> stride;
+                if (nodeCount > capacity) {
+                    // root level has the root node only
+                    int nodes = (capacity > 0) ? capacity * 2 : ((offset == 0) ? 1 : INITIAL_NODES);
+                    storage = storage.copyOf(nodes << stride);
+                }
+            }
+            return node;
+        }
+
+        private void freeNode(int node) {
+            int first = node << stride;
+            Arrays.fill(storage.values, first, first + (1 << stride), 0);
+            Arrays.fill(storage.children, first, first + (1 << stride), 0);
+            Arrays.fill(storage.lengths, first, first + (1 << stride), (byte) 0);
+            freeNodes.addLast(node);
+        }
+
+        private boolean isEmptyNode(int node) {
+            int first = node << stride;
+            for (int slot = first; slot < first + (1 << stride); slot++) {
+                if (storage.values[slot] != 0 || storage.children[slot] != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // Slot arrays of a level; replaced as a whole on growth
+    private static final class Storage {
+        private final int[] values;     // entry index + 1; 0 for none
+        private final int[] children;   // child node index + 1; 0 for none
+        private final byte[] lengths;   // prefix length of the value
+
+        private Storage(int slots) {
+            values = new int[slots];
+            children = new int[slots];
+            lengths = new byte[slots];
+        }
+
+        private Storage copyOf(int slots) {
+            Storage copy = new Storage(slots);
+            System.arraycopy(values, 0, copy.values, 0, values.length);
+            System.arraycopy(children, 0, copy.children, 0, children.length);
+            System.arraycopy(lengths, 0, copy.lengths, 0, lengths.length);
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2017-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onosproject.simplefabric;
+
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.IpPrefix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable binary trie for longest prefix match of IPv4 and IPv6 addresses.
+ * Nodes are kept in int arrays and lookups on raw address words allocate nothing.
+ *
+ * @param <V> the value type of prefix entries
+ */
+public final class IpPrefixTrie<V> {
+
+    // child node index array is indexed by (node * 2 + bit); 0 means no child, as root is never a child
+    // value array holds (value index + 1) per node; 0 means no value
+    private final int[] ip4Children;
+    private final int[] ip4Values;
+    private final int[] ip6Children;
+    private final int[] ip6Values;
+    private final Object[] values;
+
+    private IpPrefixTrie(int[] ip4Children, int[] ip4Values, int[] ip6Children, int[] ip6Values,
+                         Object[] values) {
+        this.ip4Children = ip4Children;
+        this.ip4Values = ip4Values;
+        this.ip6Children = ip6Children;
+        this.ip6Values = ip6Values;
+        this.values = values;
+    }
+
+    /**
+     * Creates an empty trie.
+     *
+     * @param <V> the value type
+     * @return the empty trie
+     */
+    public static <V> IpPrefixTrie<V> empty() {
+        return new Builder<V>().build();
+    }
+
+    /**
+     * Creates a trie builder.
+     *
+     * @param <V> the value type
+     * @return the trie builder
+     */
+    public static <V> Builder<V> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Gets the number of prefix entries.
+     *
+     * @return the number of prefix entries
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Checks if the trie has no prefix entry.
+     *
+     * @return true if the trie has no prefix entry
+     */
+    public boolean isEmpty() {
+        return values.length == 0;
+    }
+
+    /**
+     * Finds the value of the longest prefix containing the ip address.
+     * Allocates the address octets; packet paths use the raw address word lookups.
+     *
+     * @param ip the ip address to be matched
+     * @return the value of the longest matching prefix or null
+     */
+    public V lookup(IpAddress ip) {
+        byte[] octets = ip.toOctets();
+        if (ip.isIp4()) {
+            return lookup4((int) word(octets, 0, 4));
+        } else {
+            return lookup6(word(octets, 0, 8), word(octets, 8, 8));
+        }
+    }
+
+    /**
+     * Finds the value of the longest prefix containing the address of raw address words.
+     *
+     * @param isIp4 true if the address is an IPv4 address
+     * @param addressHi the upper 64 bits of the IPv6 address, or the IPv4 address in the lower 32 bits
+     * @param addressLo the lower 64 bits of the IPv6 address; ignored for IPv4
+     * @return the value of the longest matching prefix or null
+     */
+    public V lookup(boolean isIp4, long addressHi, long addressLo) {
+        return isIp4 ? lookup4((int) addressHi) : lookup6(addressHi, addressLo);
+    }
+
+    /**
+     * Finds the value of the longest prefix containing the IPv4 address.
+     *
+     * @param address the IPv4 address as int in network byte order
+     * @return the value of the longest matching prefix or null
+     */
+    @SuppressWarnings("unchecked")
+    public V lookup4(int address) {
+        int found = ip4Values[0];
+        int node = 0;
+        for (int i = 0; i < 32; i++) {
+            node = ip4Children[(node << 1) | ((address >>> (31 - i)) & 1)];
+            if (node == 0) {
+                break;
+            }
+            if (ip4Values[node] != 0) {
+                found = ip4Values[node];
+            }
+        }
+        return (found == 0) ? null : (V) values[found - 1];
+    }
+
+    /**
+     * Finds the value of the longest prefix containing the IPv6 address.
+     *
+     * @param addressHi the upper 64 bits of the IPv6 address
+     * @param addressLo the lower 64 bits of the IPv6 address
+     * @return the value of the longest matching prefix or null
+     */
+    @SuppressWarnings("unchecked")
+    public V lookup6(long addressHi, long addressLo) {
+        int found = ip6Values[0];
+        int node = 0;
+        for (int i = 0; i < 128; i++) {
+            long bit = (i < 64) ? (addressHi >>> (63 - i)) : (addressLo >>> (127 - i));
+            node = ip6Children[(node << 1) | (int) (bit & 1)];
+            if (node == 0) {
+                break;
+            }
+            if (ip6Values[node] != 0) {
+                found = ip6Values[node];
+            }
+        }
+        return (found == 0) ? null : (V) values[found - 1];
+    }
+
+    // big endian word of length bytes from offset
+    private static long word(byte[] octets, int offset, int length) {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            value = (value << 8) | (octets[i] & 0xff);
+        }
+        return value;
+    }
+
+    /**
+     * Builder of IpPrefixTrie.
+     *
+     * @param <V> the value type of prefix entries
+     */
+    public static final class Builder<V> {
+
+        private final NodeArray ip4Nodes = new NodeArray();
+        private final NodeArray ip6Nodes = new NodeArray();
+        private final List<V> values = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Puts a prefix entry; the value of the same prefix already put is replaced.
+         *
+         * @param prefix the ip prefix
+         * @param value the value of the prefix
+         * @return this builder
+         */
+        public Builder<V> put(IpPrefix prefix, V value) {
+            Objects.requireNonNull(prefix);
+            Objects.requireNonNull(value);
+            NodeArray nodes = prefix.isIp4() ? ip4Nodes : ip6Nodes;
+            byte[] octets = prefix.address().toOctets();
+            int node = 0;
+            for (int i = 0; i < prefix.prefixLength(); i++) {
+                int bit = (octets[i / Byte.SIZE] >>> (Byte.SIZE - 1 - i % Byte.SIZE)) & 1;
+                node = nodes.child(node, bit);
+            }
+            if (nodes.values[node] != 0) {
+                values.set(nodes.values[node] - 1, value);
+            } else {
+                values.add(value);
+                nodes.values[node] = values.size();
+            }
+            return this;
+        }
+
+        /**
+         * Builds an immutable trie.
+         *
+         * @return the trie
+         */
+        public IpPrefixTrie<V> build() {
+            return new IpPrefixTrie<>(Arrays.copyOf(ip4Nodes.children, ip4Nodes.count * 2),
+                                      Arrays.copyOf(ip4Nodes.values, ip4Nodes.count),
+                                      Arrays.copyOf(ip6Nodes.children, ip6Nodes.count * 2),
+                                      Arrays.copyOf(ip6Nodes.values, ip6Nodes.count),
+                                      values.toArray());
+        }
+    }
+
+    // growable node arrays used on build
+    private static final class NodeArray {
+        private int[] children = new int[64];
+        private int[] values = new int[32];
+        private int count = 1;  // root node
+
+        private int child(int node, int bit) {
+            int index = (node << 1) | bit;
+            if (children[index] == 0) {
+                if (count == values.length) {
+                    children = Arrays.copyOf(children, children.length * 2);
+                    values = Arrays.copyOf(values, values.length * 2);
+                }
+                children[index] = count++;
+            }
+            return children[index];
+        }
+    }
+}
@@ -217,6 +217,16 @@ public final class L2Network {
         return false;
     }
 
+    /**
+     * Checks if the host is of L2Network.
+     *
+     * @param hostId the HostId to be checked
+     * @return true if L2Network contains the host
+     */
+    public boolean contains(HostId hostId) {
+        return hostIds.contains(hostId);
+    }
+
     /**
      * Checks if the DeviceId is of L2Network.
      *
@@ -257,11 +267,24 @@ public final class L2Network {
     }
 
     /**
-     * Sets L2Network dirty flag.
+     * Removes host from L2Network.
+     *
+     * @param hostId the HostId to be removed
+     */
+    public void removeHost(HostId hostId) {
+        Objects.requireNonNull(hostId);
+        if (hostIds.remove(hostId)) {
+            setDirty(true);
+        }
+    }
+
+    /**
+     * Sets L2Network dirty flag; only before the L2Network is published in fabric states,
+     * for published instances are shared with listener threads.
      *
      * @param newDirty the dirty flag to be set
      */
-    public void setDirty(boolean newDirty) {
+    void setDirty(boolean newDirty) {
         dirty = newDirty;
     }
 
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2017-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onosproject.simplefabric;
+
+import org.onlab.packet.IpAddress;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import static org.onosproject.simplefabric.SimpleFabricService.NEIGHBOUR_FAILED_HOLD_MSEC;
+import static org.onosproject.simplefabric.SimpleFabricService.NEIGHBOUR_MAX_PROBES;
+import static org.onosproject.simplefabric.SimpleFabricService.NEIGHBOUR_PROBE_BASE_MSEC;
+import static org.onosproject.simplefabric.SimpleFabricService.NEIGHBOUR_REACHABLE_MSEC;
+
+/**
+ * Neighbour resolution states of the ips requested for mac; thread safe.
+ * INCOMPLETE or STALE neighbours are probed with exponential backoff up to NEIGHBOUR_MAX_PROBES,
+ * then become FAILED and are not probed for NEIGHBOUR_FAILED_HOLD_MSEC. Times are given by caller.
+ */
+final class NeighbourTable {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    /**
+     * Neighbour resolution states.
+     */
+    enum State {
+        INCOMPLETE,  // probing for no response yet
+        REACHABLE,   // resolved by host discovery
+        STALE,       // reachable once but not confirmed recently; probing again
+        FAILED       // no response for max probes
+    }
+
+    private final int maxSize;
+    private final Map<IpAddress, Entry> entries = new HashMap<>();  // guarded by this
+    private long probeCount = 0;     // guarded by this
+    private long suppressCount = 0;  // guarded by this
+    private long failCount = 0;      // guarded by this
+
+    /**
+     * Creates a neighbour table.
+     *
+     * @param maxSize the max number of neighbours tracked
+     */
+    NeighbourTable(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Advances neighbour state of the ip on a mac request.
+     *
+     * @param ip the ip address to resolve
+     * @param now the current time in milliseconds
+     * @param isResolved tells whether an ip is already known by host discovery
+     * @return true if a probe is to be sent
+     */
+    synchronized boolean admitProbe(IpAddress ip, long now, Predicate<IpAddress> isResolved) {
+        Entry entry = entries.get(ip);
+        if (entry == null) {
+            if (entries.size() >= maxSize) {
+                expire(now);
+                if (entries.size() >= maxSize) {
+                    suppressCount++;
+                    return false;
+                }
+            }
+            entry = new Entry(now);
+            entries.put(ip, entry);
+        }
+        switch (entry.state) {
+        case REACHABLE:
+            if (now - entry.stateTime < NEIGHBOUR_REACHABLE_MSEC) {
+                suppressCount++;
+                return false;
+            }
+            entry.setState(State.STALE, now);
+            break;
+        case FAILED:
+            if (now - entry.stateTime < NEIGHBOUR_FAILED_HOLD_MSEC) {
+                suppressCount++;
+                return false;
+            }
+            entry.setState(State.INCOMPLETE, now);
+            break;
+        case INCOMPLETE:
+        case STALE:
+        default:
+            break;
+        }
+        if (now < entry.nextProbeTime) {
+            suppressCount++;
+            return false;
+        }
+        // known host needs no resolution; stale one is probed once for refresh
+        if ((entry.state == State.INCOMPLETE || entry.probes > 0) && isResolved.test(ip)) {
+            entry.setState(State.REACHABLE, now);
+            suppressCount++;
+            return false;
+        }
+        if (entry.probes >= NEIGHBOUR_MAX_PROBES) {
+            log.info("simple fabric neighbour resolution failed: {} probes={}", ip, entry.probes);
+            entry.setState(State.FAILED, now);
+            failCount++;
+            return false;
+        }
+        entry.nextProbeTime = now + (NEIGHBOUR_PROBE_BASE_MSEC << entry.probes);
+        entry.probes++;
+        probeCount++;
+        return true;
+    }
+
+    /**
+     * Marks the neighbours of a host reachable, or removes them on host removal.
+     *
+     * @param ips the ip addresses of the host
+     * @param removed true if the host is removed
+     * @param now the current time in milliseconds
+     */
+    synchronized void updateHost(Collection<IpAddress> ips, boolean removed, long now) {
+        for (IpAddress ip : ips) {
+            if (removed) {
+                entries.remove(ip);
+                continue;
+            }
+            Entry entry = entries.get(ip);
+            if (entry != null) {
+                entry.setState(State.REACHABLE, now);
+            }
+        }
+    }
+
+    /**
+     * Expires neighbours and returns the unresolved ones whose next probe is due,
+     * i.e. the ones to be requested again on idle.
+     *
+     * @param now the current time in milliseconds
+     * @return the ips whose next probe is due
+     */
+    synchronized List<IpAddress> refresh(long now) {
+        expire(now);
+        List<IpAddress> dueIps = new ArrayList<>();
+        for (Map.Entry<IpAddress, Entry> entry : entries.entrySet()) {
+            if (entry.getValue().isProbeDue(now)) {
+                dueIps.add(entry.getKey());
+            }
+        }
+        return dueIps;
+    }
+
+    /**
+     * Returns the neighbour state of the ip.
+     *
+     * @param ip the ip address
+     * @return the state, or null if not tracked
+     */
+    synchronized State state(IpAddress ip) {
+        Entry entry = entries.get(ip);
+        return (entry != null) ? entry.state : null;
+    }
+
+    /**
+     * Returns the number of neighbours tracked.
+     *
+     * @return the number of neighbours
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Expires neighbours and returns the counts of the remaining ones by state.
+     *
+     * @param now the current time in milliseconds
+     * @return the neighbour counts by state
+     */
+    synchronized Map<State, Integer> stateCounts(long now) {
+        expire(now);
+        Map<State, Integer> stateCounts = new EnumMap<>(State.class);
+        for (Entry entry : entries.values()) {
+            stateCounts.merge(entry.state, 1, Integer::sum);
+        }
+        return stateCounts;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "probes=" + probeCount + " suppressed=" + suppressCount + " failed=" + failCount;
+    }
+
+    // removes expired neighbours; guarded by this
+    private void expire(long now) {
+        entries.values().removeIf(entry -> entry.isExpired(now));
+    }
+
+    // Neighbour resolution entry; guarded by the table
+    private static final class Entry {
+        private State state = State.INCOMPLETE;
+        private long stateTime;
+        private int probes = 0;
+        private long nextProbeTime = 0;
+
+        private Entry(long now) {
+            this.stateTime = now;
+        }
+
+        private void setState(State state, long now) {
+            this.state = state;
+            this.stateTime = now;
+            this.probes = 0;
+            this.nextProbeTime = 0;
+        }
+
+        // failed and reachable ones expire after their hold; incomplete and stale ones after
+        // the last probe deadline plus failed hold, i.e. if not requested any more
+        private boolean isExpired(long now) {
+            switch (state) {
+            case FAILED:
+                return now - stateTime >= NEIGHBOUR_FAILED_HOLD_MSEC;
+            case REACHABLE:
+                return now - stateTime >= NEIGHBOUR_REACHABLE_MSEC;
+            case INCOMPLETE:
+            case STALE:
+            default:
+                return now - Math.max(stateTime, nextProbeTime) >= NEIGHBOUR_FAILED_HOLD_MSEC;
+            }
+        }
+
+        // probe is sent and the next one is due
+        private boolean isProbeDue(long now) {
+            return (state == State.INCOMPLETE || state == State.STALE)
+                    && probes > 0 && now >= nextProbeTime;
+        }
+    }
+}
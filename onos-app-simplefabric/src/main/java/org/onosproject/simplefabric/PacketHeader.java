@@ -0,0 +1,245 @@
+/*
+ * Copyright 2017-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.onosproject.simplefabric;
+
+import org.onlab.packet.Ethernet;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Header fields of an IPv4 or IPv6 packet-in read from the raw frame at fixed offsets,
+ * for reactive routing to classify packets without decoding the whole packet.
+ * VLAN and QinQ tags are skipped; the vlan is of the inner most tag as in Ethernet.
+ * The ip addresses are also kept as raw address words for prefix lookups without octet copies;
+ * an IPv4 address is in the lower 32 bits of the hi word and the lo word is 0.
+ * The IpAddress objects are still built on parse, for decision keys of every packet use them.
+ */
+public final class PacketHeader {
+
+    private static final int ETH_HEADER_LENGTH = 14;
+    private static final int VLAN_TAG_LENGTH = 4;
+    private static final int MAX_VLAN_TAGS = 2;
+    private static final int IPV4_HEADER_LENGTH = 20;
+    private static final int IPV6_HEADER_LENGTH = 40;
+    private static final int IPV6_ADDRESS_LENGTH = 16;
+
+    private final long dstMac;
+    private final long srcMac;
+    private final short vlan;
+    private final short etherType;
+    private final long srcIpHi;
+    private final long srcIpLo;
+    private final long dstIpHi;
+    private final long dstIpLo;
+    private final IpAddress srcIp;
+    private final IpAddress dstIp;
+    private final byte ipProto;
+
+    private PacketHeader(long dstMac, long srcMac, short vlan, short etherType,
+                         long srcIpHi, long srcIpLo, long dstIpHi, long dstIpLo,
+                         IpAddress srcIp, IpAddress dstIp, byte ipProto) {
+        this.dstMac = dstMac;
+        this.srcMac = srcMac;
+        this.vlan = vlan;
+        this.etherType = etherType;
+        this.srcIpHi = srcIpHi;
+        this.srcIpLo = srcIpLo;
+        this.dstIpHi = dstIpHi;
+        this.dstIpLo = dstIpLo;
+        this.srcIp = srcIp;
+        this.dstIp = dstIp;
+        this.ipProto = ipProto;
+    }
+
+    /**
+     * Reads the header fields from the frame; the buffer position is not changed.
+     *
+     * @param frame the raw ethernet frame
+     * @return the header, or null if the frame is not an IPv4 or IPv6 packet or is truncated
+     */
+    public static PacketHeader parse(ByteBuffer frame) {
+        if (frame == null) {
+            return null;
+        }
+        int base = frame.position();
+        int limit = frame.limit();
+        if (limit - base < ETH_HEADER_LENGTH) {
+            return null;
+        }
+        long dstMac = readMac(frame, base);
+        long srcMac = readMac(frame, base + MacAddress.MAC_ADDRESS_LENGTH);
+        int offset = base + 2 * MacAddress.MAC_ADDRESS_LENGTH;
+        short etherType = frame.getShort(offset);
+        short vlan = Ethernet.VLAN_UNTAGGED;
+        for (int tags = 0; tags < MAX_VLAN_TAGS
+                && (etherType == Ethernet.TYPE_VLAN || etherType == Ethernet.TYPE_QINQ); tags++) {
+            if (limit - offset < 2 + VLAN_TAG_LENGTH) {
+                return null;
+            }
+            vlan = (short) (frame.getShort(offset + 2) & 0x0fff);
+            offset += VLAN_TAG_LENGTH;
+            etherType = frame.getShort(offset);
+        }
+        offset += 2;  // ip header start
+
+        if (etherType == Ethernet.TYPE_IPV4) {
+            if (limit - offset < IPV4_HEADER_LENGTH) {
+                return null;
+            }
+            int srcIp4 = frame.getInt(offset + 12);
+            int dstIp4 = frame.getInt(offset + 16);
+            return new PacketHeader(dstMac, srcMac, vlan, etherType,
+                                    srcIp4 & 0xffffffffL, 0L, dstIp4 & 0xffffffffL, 0L,
+                                    IpAddress.valueOf(srcIp4), IpAddress.valueOf(dstIp4),
+                                    frame.get(offset + 9));
+        } else if (etherType == Ethernet.TYPE_IPV6) {
+            if (limit - offset < IPV6_HEADER_LENGTH) {
+                return null;
+            }
+            int srcOffset = offset + 8;
+            int dstOffset = srcOffset + IPV6_ADDRESS_LENGTH;
+            return new PacketHeader(dstMac, srcMac, vlan, etherType,
+                                    frame.getLong(srcOffset), frame.getLong(srcOffset + 8),
+                                    frame.getLong(dstOffset), frame.getLong(dstOffset + 8),
+                                    readIp6(frame, srcOffset), readIp6(frame, dstOffset),
+                                    frame.get(offset + 6));
+        }
+        return null;
+    }
+
+    private static long readMac(ByteBuffer frame, int offset) {
+        return ((frame.getShort(offset) & 0xffffL) << 32) | (frame.getInt(offset + 2) & 0xffffffffL);
+    }
+
+    private static IpAddress readIp6(ByteBuffer frame, int offset) {
+        byte[] octets = new byte[IPV6_ADDRESS_LENGTH];
+        for (int i = 0; i < IPV6_ADDRESS_LENGTH; i++) {
+            octets[i] = frame.get(offset + i);
+        }
+        return IpAddress.valueOf(IpAddress.Version.INET6, octets);
+    }
+
+    /**
+     * Gets the destination mac.
+     *
+     * @return the destination mac address
+     */
+    public MacAddress dstMac() {
+        return MacAddress.valueOf(dstMac);
+    }
+
+    /**
+     * Gets the source mac.
+     *
+     * @return the source mac address
+     */
+    public MacAddress srcMac() {
+        return MacAddress.valueOf(srcMac);
+    }
+
+    /**
+     * Gets the vlan of the inner most tag.
+     *
+     * @return the vlan id; VlanId.NONE if untagged
+     */
+    public VlanId vlan() {
+        return VlanId.vlanId(vlan);
+    }
+
+    /**
+     * Gets the ether type of the ip header.
+     *
+     * @return Ethernet.TYPE_IPV4 or Ethernet.TYPE_IPV6
+     */
+    public short etherType() {
+        return etherType;
+    }
+
+    /**
+     * Evaluates whether the packet is an IPv4 packet.
+     *
+     * @return true for IPv4, false for IPv6
+     */
+    public boolean isIp4() {
+        return etherType == Ethernet.TYPE_IPV4;
+    }
+
+    /**
+     * Gets the upper word of the source ip; the IPv4 address in the lower 32 bits for IPv4.
+     *
+     * @return the upper 64 bits of the source ip address
+     */
+    public long srcIpHi() {
+        return srcIpHi;
+    }
+
+    /**
+     * Gets the lower word of the source ip; 0 for IPv4.
+     *
+     * @return the lower 64 bits of the source ip address
+     */
+    public long srcIpLo() {
+        return srcIpLo;
+    }
+
+    /**
+     * Gets the upper word of the destination ip; the IPv4 address in the lower 32 bits for IPv4.
+     *
+     * @return the upper 64 bits of the destination ip address
+     */
+    public long dstIpHi() {
+        return dstIpHi;
+    }
+
+    /**
+     * Gets the lower word of the destination ip; 0 for IPv4.
+     *
+     * @return the lower 64 bits of the destination ip address
+     */
+    public long dstIpLo() {
+        return dstIpLo;
+    }
+
+    /**
+     * Gets the source ip.
+     *
+     * @return the source ip address
+     */
+    public IpAddress srcIp() {
+        return srcIp;
+    }
+
+    /**
+     * Gets the destination ip.
+     *
+     * @return the destination ip address
+     */
+    public IpAddress dstIp() {
+        return dstIp;
+    }
+
+    /**
+     * Gets the ip protocol; the next header of the fixed header for IPv6.
+     *
+     * @return the ip protocol number
+     */
+    public byte ipProto() {
+        return ipProto;
+    }
+}
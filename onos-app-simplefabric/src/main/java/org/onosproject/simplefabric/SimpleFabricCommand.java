@@ -29,7 +29,7 @@ public class SimpleFabricCommand extends AbstractShellCommand {
     protected static SimpleFabricService simpleFabric;
 
     @Argument(index = 0, name = "command",
-              description = "Command: show|intents|reactive-intents|refresh|flush",
+              description = "Command: show|intents|reactive-intents|stats|refresh|flush",
               required = true, multiValued = false)
     String command = null;
 
@@ -52,6 +52,9 @@ public class SimpleFabricCommand extends AbstractShellCommand {
         case "reactive-intents":
             simpleFabric.dumpToStream("reactive-intents", System.out);
             break;
+        case "stats":
+            simpleFabric.dumpToStream("stats", System.out);
+            break;
         case "refresh":
             simpleFabric.triggerRefresh();
             System.out.println("simple fabric refresh triggered");
@@ -29,7 +29,7 @@ import java.util.Collections;
 public class SimpleFabricCommandCompleter extends AbstractChoicesCompleter {
 
     public static final List<String> COMMAND_LIST =
-        Arrays.asList("show", "intents", "reactive-intents", "refresh", "flush");
+        Arrays.asList("show", "intents", "reactive-intents", "stats", "refresh", "flush");
 
     @Override
     public List<String> choices() {
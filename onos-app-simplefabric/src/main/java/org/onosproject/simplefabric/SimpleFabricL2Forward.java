@@ -29,6 +29,7 @@ import org.onlab.packet.MacAddress;
 import org.onlab.packet.VlanId;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.core.CoreService;
+import org.onosproject.net.intent.WorkPartitionService;
 import org.onosproject.net.intf.Interface;
 import org.onosproject.net.ConnectPoint;
 import org.onosproject.net.EncapsulationType;
@@ -83,6 +84,9 @@ public class SimpleFabricL2Forward {
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected HostService hostService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected WorkPartitionService workPartitionService;
+
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected SimpleFabricService simpleFabric;
 
@@ -92,6 +96,8 @@ public class SimpleFabricL2Forward {
     private Map<Key, SinglePointToMultiPointIntent> bctIntentsMap = Maps.newConcurrentMap();
     private Map<Key, MultiPointToSinglePointIntent> uniIntentsMap = Maps.newConcurrentMap();
     private Set<Key> toBePurgedIntentKeys = new HashSet<>();
+    // l2Networks of this node's work partitions; intents of other l2Networks are handled by their owner nodes
+    private Set<String> ownedL2Networks = ImmutableSet.of();
 
     private final InternalSimpleFabricListener simpleFabricListener = new InternalSimpleFabricListener();
 
@@ -142,8 +148,16 @@ public class SimpleFabricL2Forward {
         Map<Key, SinglePointToMultiPointIntent> newBctIntentsMap = Maps.newConcurrentMap();
         Map<Key, MultiPointToSinglePointIntent> newUniIntentsMap = Maps.newConcurrentMap();
 
+        Set<ResourceGroup> releasedGroups = new HashSet<>();
+        Set<String> newOwnedL2Networks = new HashSet<>();
         for (L2Network l2Network : simpleFabric.getL2Networks()) {
-            // scans all l2network regardless of dirty flag
+            if (!isMine(l2Network)) {
+                // owned by other node; forget its intents here without withdrawal
+                releasedGroups.add(ResourceGroup.of(l2Network.name()));
+                continue;
+            }
+            newOwnedL2Networks.add(l2Network.name());
+            // scans all owned l2network regardless of dirty flag
             // if l2Network.l2Forward == false or number of interfaces() < 2, no Intents generated
             for (SinglePointToMultiPointIntent intent : buildBrcIntents(l2Network)) {
                 newBctIntentsMap.put(intent.key(), intent);
@@ -151,15 +165,17 @@ public class SimpleFabricL2Forward {
             for (MultiPointToSinglePointIntent intent : buildUniIntents(l2Network, hostsFromL2Network(l2Network))) {
                 newUniIntentsMap.put(intent.key(), intent);
             }
-            if (l2Network.dirty()) {
-                l2Network.setDirty(false);
-            }
+            // NOTE: l2Network is of the shared fabric states snapshot; never modified here
         }
+        loadAcquiredIntents(Sets.difference(newOwnedL2Networks, ownedL2Networks));
 
         boolean bctUpdated = false;
         for (SinglePointToMultiPointIntent intent : bctIntentsMap.values()) {
             SinglePointToMultiPointIntent newIntent = newBctIntentsMap.get(intent.key());
-            if (newIntent == null) {
+            if (newIntent == null && releasedGroups.contains(intent.resourceGroup())) {
+                log.info("simple fabric l2forward release broadcast intent to owner node: {}", intent.key().toString());
+                bctUpdated = true;
+            } else if (newIntent == null) {
                 log.info("simple fabric l2forward withdraw broadcast intent: {}", intent.key().toString());
                 toBePurgedIntentKeys.add(intent.key());
                 intentService.withdraw(intent);
@@ -184,7 +200,10 @@ public class SimpleFabricL2Forward {
         boolean uniUpdated = false;
         for (MultiPointToSinglePointIntent intent : uniIntentsMap.values()) {
             MultiPointToSinglePointIntent newIntent = newUniIntentsMap.get(intent.key());
-            if (newIntent == null) {
+            if (newIntent == null && releasedGroups.contains(intent.resourceGroup())) {
+                log.info("simple fabric l2forward release unicast intent to owner node: {}", intent.key().toString());
+                uniUpdated = true;
+            } else if (newIntent == null) {
                 log.info("simple fabric l2forward withdraw unicast intent: {}", intent.key().toString());
                 toBePurgedIntentKeys.add(intent.key());
                 intentService.withdraw(intent);
@@ -212,6 +231,36 @@ public class SimpleFabricL2Forward {
         if (uniUpdated) {
             uniIntentsMap = newUniIntentsMap;
         }
+        if (!newOwnedL2Networks.equals(ownedL2Networks)) {
+            log.info("simple fabric l2forward owned l2Networks: {}", newOwnedL2Networks);
+            ownedL2Networks = ImmutableSet.copyOf(newOwnedL2Networks);
+        }
+    }
+
+    // Loads existing intents of the l2Networks newly owned by this node, submitted by the previous owner
+    // or before restart, for the diff on refresh to withdraw the stale ones
+    private void loadAcquiredIntents(Set<String> acquiredL2Networks) {
+        if (acquiredL2Networks.isEmpty()) {
+            return;
+        }
+        Set<ResourceGroup> acquiredGroups = acquiredL2Networks.stream()
+                .map(ResourceGroup::of).collect(Collectors.toSet());
+        for (Intent intent : intentService.getIntents()) {
+            if (!l2ForwardAppId.equals(intent.appId()) || !acquiredGroups.contains(intent.resourceGroup())) {
+                continue;
+            }
+            if (intent instanceof SinglePointToMultiPointIntent) {
+                bctIntentsMap.putIfAbsent(intent.key(), (SinglePointToMultiPointIntent) intent);
+            } else if (intent instanceof MultiPointToSinglePointIntent) {
+                uniIntentsMap.putIfAbsent(intent.key(), (MultiPointToSinglePointIntent) intent);
+            }
+        }
+        log.info("simple fabric l2forward took over intents of l2Networks: {}", acquiredL2Networks);
+    }
+
+    // Checks if the l2Network is in work partitions of this node.
+    private boolean isMine(L2Network l2Network) {
+        return workPartitionService.isMine(l2Network.name(), name -> (long) name.hashCode());
     }
 
     private void checkIntentsPurge() {
@@ -403,6 +452,11 @@ public class SimpleFabricL2Forward {
                           + "] -> " + intent.filteredEgressPoint().connectPoint());
             }
             out.println("");
+            out.println("L2Forward Owned L2Networks:\n");
+            for (String name : ownedL2Networks) {
+                out.println("    " + name);
+            }
+            out.println("");
             out.println("L2Forward Intents to Be Purged:\n");
             for (Key key: toBePurgedIntentKeys) {
                 out.println("    " + key.toString());
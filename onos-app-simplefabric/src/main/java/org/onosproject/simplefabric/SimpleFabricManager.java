@@ -16,11 +16,12 @@
 
 package org.onosproject.simplefabric;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
-import com.googlecode.concurrenttrees.radix.node.concrete.DefaultByteArrayNodeFactory;
-import com.googlecode.concurrenttrees.radixinverted.ConcurrentInvertedRadixTree;
-import com.googlecode.concurrenttrees.radixinverted.InvertedRadixTree;
+import com.google.common.collect.Sets;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
@@ -29,8 +30,6 @@ import org.apache.felix.scr.annotations.ReferenceCardinality;
 import org.apache.felix.scr.annotations.Service;
 import org.onlab.packet.ARP;
 import org.onlab.packet.Ethernet;
-import org.onlab.packet.Ip4Address;
-import org.onlab.packet.Ip6Address;
 import org.onlab.packet.IpAddress;
 import org.onlab.packet.IpPrefix;
 import org.onlab.packet.IPv6;
@@ -53,30 +52,46 @@ import org.onosproject.net.config.NetworkConfigRegistry;
 import org.onosproject.net.config.NetworkConfigService;
 import org.onosproject.net.config.basics.SubjectFactories;
 import org.onosproject.net.ConnectPoint;
+import org.onosproject.net.DeviceId;
 import org.onosproject.net.device.DeviceEvent;
 import org.onosproject.net.device.DeviceListener;
 import org.onosproject.net.device.DeviceService;
 import org.onosproject.net.flow.DefaultTrafficTreatment;
 import org.onosproject.net.flow.TrafficTreatment;
 import org.onosproject.net.Host;
+import org.onosproject.net.HostId;
+import org.onosproject.net.PortNumber;
 import org.onosproject.net.host.HostService;
 import org.onosproject.net.host.HostListener;
 import org.onosproject.net.host.HostEvent;
 import org.onosproject.net.packet.PacketService;
 import org.onosproject.net.packet.DefaultOutboundPacket;
-import org.onosproject.net.packet.OutboundPacket;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
-import static org.onosproject.simplefabric.RouteTools.createBinaryString;
+import static org.onlab.util.Tools.groupedThreads;
 
 
 /**
@@ -120,32 +135,79 @@ public class SimpleFabricManager extends ListenerRegistry<SimpleFabricEvent, Sim
     // SimpleFabric variables
     private ApplicationId appId = null;
 
-    // l2 broadcast networks
-    private Set<L2Network> l2Networks = new HashSet<>();
-    private Set<Interface> l2NetworkInterfaces = new HashSet<>();
+    // Interface indexes; updated by interface events
+    private final Object interfaceIndexLock = new Object();
+    private final Map<String, Interface> interfaceNameMap = Maps.newConcurrentMap();
+    private final Map<ConnectPointVlan, Interface> interfacePortMap = Maps.newConcurrentMap();
 
-    // Subnet table
-    private Set<IpSubnet> ipSubnets = new HashSet<>();
-    private InvertedRadixTree<IpSubnet> ip4SubnetTable =
-                 new ConcurrentInvertedRadixTree<>(new DefaultByteArrayNodeFactory());
-    private InvertedRadixTree<IpSubnet> ip6SubnetTable =
-                 new ConcurrentInvertedRadixTree<>(new DefaultByteArrayNodeFactory());
+    // Host indexes; updated by host events
+    private final Object hostIndexLock = new Object();
+    private final Map<HostId, Host> hostMap = Maps.newConcurrentMap();
+    private final Map<ConnectPointVlan, Set<HostId>> hostPortMap = Maps.newConcurrentMap();
+
+    // l2Networks, ipSubnets, borderRoutes, virtual gateways and their lookup indexes
+    // NOTE: fabricState is immutable and replaced as a whole by the refresh thread only
+    private volatile FabricState fabricState = FabricState.EMPTY;
+
+    // Compiled config; recompiled only after config events or refresh requests
+    private CompiledFabricConfig compiledConfig = null;   // refresh thread only
+    private volatile boolean configChanged = true;
 
     // Border Route table
-    private Set<Route> borderRoutes = new HashSet<>();
-    private InvertedRadixTree<Route> ip4BorderRouteTable =
-                 new ConcurrentInvertedRadixTree<>(new DefaultByteArrayNodeFactory());
-    private InvertedRadixTree<Route> ip6BorderRouteTable =
-                 new ConcurrentInvertedRadixTree<>(new DefaultByteArrayNodeFactory());
+    // NOTE: borderRouteFib is updated in place by the refresh thread only
+    private final IpPrefixFib<Route> borderRouteFib = new IpPrefixFib<>();
+
+    // Neighbour resolution states per ip of requestMac
+    private final NeighbourTable neighbourTable = new NeighbourTable(NEIGHBOUR_TABLE_SIZE);
+    private final AtomicLong neighbourUnknownCount = new AtomicLong();  // requests of no l2Network to send
 
-    // VirtialGateway
-    private Map<IpAddress, MacAddress> virtualGatewayIpMacMap = Maps.newConcurrentMap();
+    // Serialized neighbour request frames per (gateway, target, vlan); NOTE: frames are never modified
+    private final Cache<NeighbourFrameKey, byte[]> neighbourFrames = CacheBuilder.newBuilder()
+            .maximumSize(NEIGHBOUR_TABLE_SIZE)
+            .expireAfterAccess(NEIGHBOUR_FAILED_HOLD_MSEC, TimeUnit.MILLISECONDS)
+            .build();
 
-    // Refresh monitor thread
+    // Generation of fabric states for cached lookups; increased on changes other than host membership
+    private final AtomicLong generation = new AtomicLong();
+
+    // Refresh monitor and scheduler; refresh, delta refresh, flush and idle tasks run on single thread
     private Object refreshMonitor = new Object();
-    private boolean doRefresh = false;
-    private boolean doFlush = false;
-    private InternalRefreshThread refreshThread;
+    private volatile ScheduledExecutorService refreshExecutor;
+    private boolean doRefresh = false;      // guarded by refreshMonitor
+    private boolean doFlush = false;        // guarded by refreshMonitor
+    private boolean doDelta = false;        // guarded by refreshMonitor
+    private ScheduledFuture<?> deltaFuture = null;  // guarded by refreshMonitor
+    private Set<DeviceId> pendingDeviceIds = new HashSet<>();   // guarded by refreshMonitor
+    private Set<String> pendingInterfaceNames = new HashSet<>();   // guarded by refreshMonitor
+    private Set<HostId> pendingHostIds = new HashSet<>();   // guarded by refreshMonitor
+    private long lastFullRefreshTime = 0;
+
+    // Refresh trigger coalescing states and counters; guarded by refreshMonitor
+    private int pendingTriggers = 0;        // triggers merged into the next refresh
+    private long firstTriggerTime = 0;      // of pending delta triggers
+    private long lastTriggerTime = 0;       // of pending delta triggers
+    private long lastDeltaRefreshTime = 0;
+    private long configTriggerCount = 0;
+    private long deltaTriggerCount = 0;
+    private long fullRefreshCount = 0;
+    private long deltaRefreshCount = 0;
+    private long mergedTriggerCount = 0;    // triggers absorbed by other trigger's refresh
+    private int lastMergedTriggers = 0;
+    private int maxMergedTriggers = 0;
+
+    // Cycle durations of refresh tasks; idle cycle is deferred after an overrun cycle
+    // until quiet for IDLE_INTERVAL_MSEC, but never beyond IDLE_MAX_GAP_MSEC since the last idle run
+    private final CycleStats refreshCycleStats = new CycleStats("refresh");
+    private final CycleStats deltaCycleStats = new CycleStats("delta");
+    private final CycleStats flushCycleStats = new CycleStats("flush");
+    private final CycleStats idleCycleStats = new CycleStats("idle");
+    private long lastCycleEndTime = 0;      // of refresh, delta and flush cycles; refreshExecutor only
+    private boolean lastCycleOverran = false;  // of refresh, delta and flush cycles; refreshExecutor only
+    private long lastIdleRunTime = 0;       // refreshExecutor only
+    private volatile long idleSkipCount = 0;  // updated on refreshExecutor only
+
+    // Event dispatchers per SimpleFabricListener; each listener consumes events on its own thread
+    private final Map<SimpleFabricListener, ListenerDispatcher> dispatchers = Maps.newConcurrentMap();
 
     // Listener for Service Events
     private final InternalNetworkConfigListener configListener = new InternalNetworkConfigListener();
@@ -171,13 +233,19 @@ public class SimpleFabricManager extends ListenerRegistry<SimpleFabricEvent, Sim
             appId = coreService.registerApplication(APP_ID);
         }
 
-        // initial refresh
+        refreshExecutor = Executors.newSingleThreadScheduledExecutor(
+                groupedThreads("onos/simplefabric", "refresh", log));
+
+        // initial interface and host indexes and refresh
+        rebuildInterfaceIndex();
+        rebuildHostIndex();
         refresh();
 
         configService.addListener(configListener);
         registry.registerConfigFactory(simpleFabricConfigFactory);
         deviceService.addListener(deviceListener);
         hostService.addListener(hostListener);
+        interfaceService.addListener(interfaceListener);
 
         componentService.activate(appId, SimpleFabricNeighbour.class.getName());
         componentService.activate(appId, SimpleFabricReactiveRouting.class.getName());
@@ -185,8 +253,7 @@ public class SimpleFabricManager extends ListenerRegistry<SimpleFabricEvent, Sim
             componentService.activate(appId, SimpleFabricL2Forward.class.getName());
         }
 
-        refreshThread = new InternalRefreshThread();
-        refreshThread.start();
+        scheduleIdle(IDLE_INTERVAL_MSEC);
 
         log.info("simple fabric started");
     }
@@ -203,32 +270,69 @@ public class SimpleFabricManager extends ListenerRegistry<SimpleFabricEvent, Sim
 
         deviceService.removeListener(deviceListener);
         hostService.removeListener(hostListener);
+        interfaceService.removeListener(interfaceListener);
         registry.unregisterConfigFactory(simpleFabricConfigFactory);
         configService.removeListener(configListener);
 
-        refreshThread.stop();
-        refreshThread = null;
+        refreshExecutor.shutdownNow();
+        refreshExecutor = null;
+        synchronized (refreshMonitor) {
+            doRefresh = false;
+            doFlush = false;
+            doDelta = false;
+            deltaFuture = null;
+        }
 
         log.info("simple fabric stopped");
     }
 
+    @Override
+    public void addListener(SimpleFabricListener listener) {
+        super.addListener(listener);
+        dispatchers.computeIfAbsent(listener, ListenerDispatcher::new);
+    }
+
+    @Override
+    public void removeListener(SimpleFabricListener listener) {
+        super.removeListener(listener);
+        ListenerDispatcher dispatcher = dispatchers.remove(listener);
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Override
+    public void process(SimpleFabricEvent event) {
+        if (event.type() == SimpleFabricEvent.Type.SIMPLE_FABRIC_DUMP) {
+            super.process(event);  // dump synchronously for the caller's output stream
+            return;
+        }
+        for (ListenerDispatcher dispatcher : dispatchers.values()) {
+            dispatcher.enqueue(event);
+        }
+    }
+
     // Set up from configuration
     // returns found dirty and refresh listners are called (true) or not (false)
     private boolean refresh() {
         log.debug("simple fabric refresh");
         boolean dirty = false;
+        lastFullRefreshTime = System.currentTimeMillis();
 
-        SimpleFabricConfig config = configService.getConfig(coreService.registerApplication(APP_ID),
-                                                            SimpleFabricConfig.class);
+        CompiledFabricConfig config = compileConfig();
         if (config == null) {
             log.debug("No reactive routing config available!");
             return false;
         }
 
+        // repair interface and host indexes for events might be missed
+        rebuildInterfaceIndex();
+        rebuildHostIndex();
+
         // l2Networks
+        FabricState prevState = fabricState;
         Set<L2Network> newL2Networks = new HashSet<>();
-        Set<Interface> newL2NetworkInterfaces = new HashSet<>();
-        for (L2Network newL2NetworkConfig : config.getL2Networks()) {
+        for (L2Network newL2NetworkConfig : config.l2Networks()) {
             L2Network newL2Network = L2Network.of(newL2NetworkConfig);
 
             // fill up interfaces and Hosts with active port only
@@ -236,97 +340,323 @@ public class SimpleFabricManager extends ListenerRegistry<SimpleFabricEvent, Sim
                 Interface iface = getInterfaceByName(ifaceName);
                 if (iface != null && deviceService.isAvailable(iface.connectPoint().deviceId())) {
                      newL2Network.addInterface(iface);
-                     newL2NetworkInterfaces.add(iface);
-                }
-            }
-            for (Host host : hostService.getHosts()) {
-                // consider host with ip only
-                if (!host.ipAddresses().isEmpty()) {
-                    Interface iface = findAvailableDeviceHostInterface(host);
-                    if (iface != null && newL2Network.contains(iface)) {
-                        newL2Network.addHost(host);
-                    }
-                }
-            }
-            newL2Network.setDirty(true);
-
-            // update newL2Network's dirty flags if same entry already exists
-            for (L2Network prevL2Network : l2Networks) {
-                if (prevL2Network.equals(newL2Network)) {
-                    newL2Network.setDirty(prevL2Network.dirty());
-                    break;
+                     addInterfaceHosts(newL2Network, iface);
                 }
             }
+            // dirty flag tells if changed by the refresh publishing it; never changed once published
+            newL2Network.setDirty(!newL2Network.equals(prevState.l2NetworkNameMap.get(newL2Network.name())));
             newL2Networks.add(newL2Network);
         }
-        if (!l2Networks.equals(newL2Networks)) {
-            l2Networks = newL2Networks;
+        if (!prevState.l2Networks.equals(newL2Networks)) {
             dirty = true;
         }
-        if (!l2NetworkInterfaces.equals(newL2NetworkInterfaces)) {
-            l2NetworkInterfaces = newL2NetworkInterfaces;
+
+        // ipSubnets; virtual gateways are derived from ipSubnets
+        // NOTE: unchanged compiled config shares its sets with prevState, so equals() returns at once
+        Set<IpSubnet> newIpSubnets = prevState.ipSubnets;
+        IpPrefixTrie<IpSubnet> newIpSubnetTable = prevState.ipSubnetTable;
+        VirtualGatewayTable newVirtualGatewayTable = prevState.virtualGatewayTable;
+        if (!prevState.ipSubnets.equals(config.ipSubnets())) {
+            newIpSubnets = config.ipSubnets();
+            newIpSubnetTable = config.ipSubnetTable();
+            newVirtualGatewayTable = FabricState.buildVirtualGatewayTable(newIpSubnets);
             dirty = true;
         }
 
-        // ipSubnets
-        Set<IpSubnet> newIpSubnets = config.ipSubnets();
-        InvertedRadixTree<IpSubnet> newIp4SubnetTable =
-                 new ConcurrentInvertedRadixTree<>(new DefaultByteArrayNodeFactory());
-        InvertedRadixTree<IpSubnet> newIp6SubnetTable =
-                 new ConcurrentInvertedRadixTree<>(new DefaultByteArrayNodeFactory());
-        Map<IpAddress, MacAddress> newVirtualGatewayIpMacMap = Maps.newConcurrentMap();
-        for (IpSubnet subnet : newIpSubnets) {
-            if (subnet.ipPrefix().isIp4()) {
-                newIp4SubnetTable.put(createBinaryString(subnet.ipPrefix()), subnet);
-            } else {
-                newIp6SubnetTable.put(createBinaryString(subnet.ipPrefix()), subnet);
+        // borderRoutes config handling
+        Set<Route> newBorderRoutes = prevState.borderRoutes;
+        if (!prevState.borderRoutes.equals(config.borderRoutes())) {
+            newBorderRoutes = config.borderRoutes();
+            refreshBorderRouteFib(prevState.borderRoutes, config.borderRouteMap());
+            dirty = true;
+        }
+
+        // publish new states and notify to SimpleFabric listeners
+        if (dirty) {
+            fabricState = new FabricState(newL2Networks, newIpSubnets, newIpSubnetTable, newBorderRoutes,
+                                          newVirtualGatewayTable);
+            generation.incrementAndGet();
+            log.info("simple fabric refresh; notify events");
+            process(new SimpleFabricEvent(SimpleFabricEvent.Type.SIMPLE_FABRIC_UPDATED, "updated"));
+        }
+        return dirty;
+    }
+
+    // Gets the compiled config; recompiles only if config is changed after the last compile
+    private CompiledFabricConfig compileConfig() {
+        if (!configChanged && compiledConfig != null) {
+            return compiledConfig;
+        }
+        configChanged = false;
+        SimpleFabricConfig config = configService.getConfig(coreService.registerApplication(APP_ID),
+                                                            SimpleFabricConfig.class);
+        if (config == null) {
+            compiledConfig = null;
+        } else if (compiledConfig == null || !compiledConfig.isCompiledFrom(config)) {
+            compiledConfig = CompiledFabricConfig.of(config);
+            log.info("simple fabric config compiled: l2Networks={} ipSubnets={} borderRoutes={}",
+                     compiledConfig.l2Networks().size(), compiledConfig.ipSubnets().size(),
+                     compiledConfig.borderRoutes().size());
+        }
+        return compiledConfig;
+    }
+
+    // Apply border route changes to borderRouteFib; bulk load if most of the routes are changed
+    private void refreshBorderRouteFib(Set<Route> prevRoutes, Map<IpPrefix, Route> newRouteMap) {
+        Collection<Route> newRoutes = newRouteMap.values();
+        Set<IpPrefix> removedPrefixes = new HashSet<>();
+        for (Route route : prevRoutes) {
+            if (!newRouteMap.containsKey(route.prefix())) {
+                removedPrefixes.add(route.prefix());
             }
-            newVirtualGatewayIpMacMap.put(subnet.gatewayIp(), subnet.gatewayMac());
         }
-        if (!ipSubnets.equals(newIpSubnets)) {
-            ipSubnets = newIpSubnets;
-            ip4SubnetTable = newIp4SubnetTable;
-            ip6SubnetTable = newIp6SubnetTable;
-            dirty = true;
+        Set<Route> addedRoutes = new HashSet<>();
+        for (Route route : newRoutes) {
+            if (!prevRoutes.contains(route)) {
+                addedRoutes.add(route);
+            }
         }
-        if (!virtualGatewayIpMacMap.equals(newVirtualGatewayIpMacMap)) {
-            virtualGatewayIpMacMap = newVirtualGatewayIpMacMap;
-            dirty = true;
+        if (borderRouteFib.size() == 0
+                || removedPrefixes.size() + addedRoutes.size() > newRouteMap.size() / 2) {
+            borderRouteFib.load(newRouteMap);
+            log.info("simple fabric border route fib loaded: routes={} memory={}",
+                     borderRouteFib.size(), borderRouteFib.memoryBytes());
+            return;
+        }
+        for (IpPrefix prefix : removedPrefixes) {
+            borderRouteFib.remove(prefix);
+        }
+        for (Route route : addedRoutes) {
+            borderRouteFib.put(route.prefix(), route);
         }
+        log.info("simple fabric border route fib updated: removed={} added={} routes={}",
+                 removedPrefixes.size(), addedRoutes.size(), borderRouteFib.size());
+    }
 
-        // borderRoutes config handling
-        Set<Route> newBorderRoutes = config.borderRoutes();
-        if (!borderRoutes.equals(newBorderRoutes)) {
-            InvertedRadixTree<Route> newIp4BorderRouteTable =
-                    new ConcurrentInvertedRadixTree<>(new DefaultByteArrayNodeFactory());
-            InvertedRadixTree<Route> newIp6BorderRouteTable =
-                    new ConcurrentInvertedRadixTree<>(new DefaultByteArrayNodeFactory());
-            for (Route route : newBorderRoutes) {
-                if (route.prefix().isIp4()) {
-                    newIp4BorderRouteTable.put(createBinaryString(route.prefix()), route);
+    // Apply device, interface and host changes onto current l2Networks without full rebuild
+    // returns found dirty and refresh listners are called (true) or not (false)
+    private boolean refreshDelta(Set<DeviceId> deviceIds, Set<String> ifaceNames, Set<HostId> hostIds) {
+        log.debug("simple fabric delta refresh: deviceIds={} interfaceNames={} hostIds={}",
+                  deviceIds, ifaceNames, hostIds);
+        boolean dirty = false;
+
+        // rebuild l2Networks related to the changed devices or interfaces
+        FabricState prevState = fabricState;
+        Map<String, L2Network> newL2NetworkMap = new HashMap<>();
+        boolean l2NetworkChanged = false;
+        for (L2Network l2Network : prevState.l2Networks) {
+            if (isL2NetworkAffected(l2Network, deviceIds, ifaceNames)) {
+                L2Network newL2Network = buildL2Network(l2Network);
+                newL2Network.setDirty(!newL2Network.equals(l2Network));
+                newL2NetworkMap.put(newL2Network.name(), newL2Network);
+                l2NetworkChanged = true;
+            } else {
+                newL2NetworkMap.put(l2Network.name(), l2Network);
+            }
+        }
+
+        // move changed hosts to the l2Network of its current location
+        List<String> l2NetworkNames = new ArrayList<>(newL2NetworkMap.keySet());
+        for (HostId hostId : hostIds) {
+            Host host = hostMap.get(hostId);
+            Interface iface = null;
+            if (host != null && !host.ipAddresses().isEmpty()) {  // consider host with ip only
+                iface = findAvailableDeviceHostInterface(host);
+            }
+            for (String name : l2NetworkNames) {
+                L2Network l2Network = newL2NetworkMap.get(name);
+                boolean isMember = iface != null && l2Network.contains(iface);
+                if (isMember == l2Network.contains(hostId)) {
+                    continue;
+                }
+                // copy on update; l2Network instances may be in use by other threads
+                L2Network newL2Network = L2Network.of(l2Network);
+                if (isMember) {
+                    newL2Network.addHost(host);
                 } else {
-                    newIp6BorderRouteTable.put(createBinaryString(route.prefix()), route);
+                    newL2Network.removeHost(hostId);
                 }
+                newL2NetworkMap.put(name, newL2Network);
+                l2NetworkChanged = true;
+            }
+        }
+
+        FabricState newState = prevState;
+        if (l2NetworkChanged) {
+            Set<L2Network> newL2Networks = new HashSet<>(newL2NetworkMap.values());
+            if (!prevState.l2Networks.equals(newL2Networks)) {
+                newState = prevState.withL2Networks(cleanReusedL2Networks(newL2Networks, prevState));
+                fabricState = newState;
+                dirty = true;
             }
-            borderRoutes = newBorderRoutes;
-            ip4BorderRouteTable = newIp4BorderRouteTable;
-            ip6BorderRouteTable = newIp6BorderRouteTable;
-            dirty = true;
         }
 
         // notify to SimpleFabric listeners
         if (dirty) {
-            log.info("simple fabric refresh; notify events");
+            // host membership changes only keep lookups cached by generation valid
+            if (!newState.l2NetworkInterfaces.equals(prevState.l2NetworkInterfaces)) {
+                generation.incrementAndGet();
+            }
+            log.info("simple fabric delta refresh; notify events");
             process(new SimpleFabricEvent(SimpleFabricEvent.Type.SIMPLE_FABRIC_UPDATED, "updated"));
         }
         return dirty;
     }
 
+    // l2Networks to be published; reused ones flagged dirty by the previous refresh are replaced by clean copies
+    // NOTE: published l2Network instances are never modified, for they are read by listener threads
+    private Set<L2Network> cleanReusedL2Networks(Set<L2Network> l2Networks, FabricState prevState) {
+        Set<L2Network> cleanL2Networks = new HashSet<>();
+        for (L2Network l2Network : l2Networks) {
+            if (l2Network.dirty() && l2Network == prevState.l2NetworkNameMap.get(l2Network.name())) {
+                L2Network cleanL2Network = L2Network.of(l2Network);
+                cleanL2Network.setDirty(false);
+                l2Network = cleanL2Network;
+            }
+            cleanL2Networks.add(l2Network);
+        }
+        return cleanL2Networks;
+    }
+
+    // checks if the l2Network has any configured interface of the interface names or on the devices
+    private boolean isL2NetworkAffected(L2Network l2Network, Set<DeviceId> deviceIds, Set<String> ifaceNames) {
+        for (String ifaceName : l2Network.interfaceNames()) {
+            if (ifaceNames.contains(ifaceName)) {
+                return true;
+            }
+            if (!deviceIds.isEmpty()) {
+                Interface iface = getInterfaceByName(ifaceName);
+                if (iface != null && deviceIds.contains(iface.connectPoint().deviceId())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // build l2Network of available interfaces and connected hosts from the l2Network config
+    private L2Network buildL2Network(L2Network l2NetworkConfig) {
+        L2Network newL2Network = new L2Network(l2NetworkConfig.name(), l2NetworkConfig.interfaceNames(),
+                                               l2NetworkConfig.encapsulation(), l2NetworkConfig.l2Forward(),
+                                               l2NetworkConfig.l2Broadcast());
+        for (String ifaceName : l2NetworkConfig.interfaceNames()) {
+            Interface iface = getInterfaceByName(ifaceName);
+            if (iface != null && deviceService.isAvailable(iface.connectPoint().deviceId())) {
+                newL2Network.addInterface(iface);
+                addInterfaceHosts(newL2Network, iface);
+            }
+        }
+        return newL2Network;
+    }
+
+    // Interface index handlers
+
+    private void rebuildInterfaceIndex() {
+        synchronized (interfaceIndexLock) {
+            Map<String, Interface> newNameMap = new HashMap<>();
+            Map<ConnectPointVlan, Interface> newPortMap = new HashMap<>();
+            for (Interface iface : interfaceService.getInterfaces()) {
+                newNameMap.putIfAbsent(iface.name(), iface);
+                newPortMap.putIfAbsent(ConnectPointVlan.of(iface), iface);
+            }
+            // update in place not to make readers miss entries during rebuild
+            interfaceNameMap.keySet().retainAll(newNameMap.keySet());
+            interfaceNameMap.putAll(newNameMap);
+            interfacePortMap.keySet().retainAll(newPortMap.keySet());
+            interfacePortMap.putAll(newPortMap);
+        }
+    }
+
+    private void addInterfaceIndex(Interface iface) {
+        synchronized (interfaceIndexLock) {
+            interfaceNameMap.put(iface.name(), iface);
+            interfacePortMap.put(ConnectPointVlan.of(iface), iface);
+        }
+    }
+
+    private void removeInterfaceIndex(Interface iface) {
+        synchronized (interfaceIndexLock) {
+            interfaceNameMap.remove(iface.name(), iface);
+            ConnectPointVlan key = ConnectPointVlan.of(iface);
+            if (interfacePortMap.remove(key, iface)) {
+                // other interface might have the same port and vlan
+                for (Interface other : interfaceService.getInterfacesByPort(iface.connectPoint())) {
+                    if (!other.equals(iface) && other.vlan().equals(iface.vlan())) {
+                        interfacePortMap.put(key, other);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    // Host index handlers
+
+    private void rebuildHostIndex() {
+        synchronized (hostIndexLock) {
+            Map<HostId, Host> newHostMap = new HashMap<>();
+            Map<ConnectPointVlan, Set<HostId>> newPortMap = new HashMap<>();
+            for (Host host : hostService.getHosts()) {
+                newHostMap.put(host.id(), host);
+                newPortMap.computeIfAbsent(ConnectPointVlan.of(host), k -> Sets.newConcurrentHashSet())
+                        .add(host.id());
+            }
+            // update in place not to make readers miss entries during rebuild
+            hostMap.keySet().retainAll(newHostMap.keySet());
+            hostMap.putAll(newHostMap);
+            hostPortMap.keySet().retainAll(newPortMap.keySet());
+            hostPortMap.putAll(newPortMap);
+        }
+    }
+
+    private void updateHostIndex(Host host) {
+        synchronized (hostIndexLock) {
+            Host prevHost = hostMap.put(host.id(), host);
+            ConnectPointVlan key = ConnectPointVlan.of(host);
+            if (prevHost != null && !ConnectPointVlan.of(prevHost).equals(key)) {
+                removeHostPort(ConnectPointVlan.of(prevHost), host.id());
+            }
+            hostPortMap.computeIfAbsent(key, k -> Sets.newConcurrentHashSet()).add(host.id());
+        }
+    }
+
+    private void removeHostIndex(HostId hostId) {
+        synchronized (hostIndexLock) {
+            Host prevHost = hostMap.remove(hostId);
+            if (prevHost != null) {
+                removeHostPort(ConnectPointVlan.of(prevHost), hostId);
+            }
+        }
+    }
+
+    // guarded by hostIndexLock
+    private void removeHostPort(ConnectPointVlan key, HostId hostId) {
+        Set<HostId> hostIds = hostPortMap.get(key);
+        if (hostIds != null) {
+            hostIds.remove(hostId);
+            if (hostIds.isEmpty()) {
+                hostPortMap.remove(key);
+            }
+        }
+    }
+
+    // adds hosts on the port and vlan of the interface to l2Network
+    private void addInterfaceHosts(L2Network l2Network, Interface iface) {
+        Set<HostId> hostIds = hostPortMap.get(ConnectPointVlan.of(iface));
+        if (hostIds == null) {
+            return;
+        }
+        for (HostId hostId : hostIds) {
+            Host host = hostMap.get(hostId);
+            // consider host with ip only
+            if (host != null && !host.ipAddresses().isEmpty()) {
+                l2Network.addHost(host);
+            }
+        }
+    }
+
     private Interface getInterfaceByName(String interfaceName) {
-        Interface intf = interfaceService.getInterfaces().stream()
-                          .filter(iface -> iface.name().equals(interfaceName))
-                          .findFirst()
-                          .orElse(null);
+        Interface intf = interfaceNameMap.get(interfaceName);
         if (intf == null) {
             log.warn("simple fabric unknown interface name: {}", interfaceName);
         }
@@ -343,117 +673,100 @@ public class SimpleFabricManager extends ListenerRegistry<SimpleFabricEvent, Sim
 
     @Override
     public Collection<L2Network> getL2Networks() {
-        return ImmutableSet.copyOf(l2Networks);
+        return fabricState.l2Networks;
     }
 
     @Override
     public Set<IpSubnet> getIpSubnets() {
-        return ImmutableSet.copyOf(ipSubnets);
+        return fabricState.ipSubnets;
     }
 
     @Override
     public Set<Route> getBorderRoutes() {
-        return ImmutableSet.copyOf(borderRoutes);
+        return fabricState.borderRoutes;
     }
 
     @Override
     public boolean isVMac(MacAddress mac) {
-        return virtualGatewayIpMacMap.containsValue(mac);
+        return fabricState.virtualGatewayTable.containsMac(mac);
     }
 
     @Override
     public boolean isL2NetworkInterface(Interface intf) {
-        return l2NetworkInterfaces.contains(intf);
+        return fabricState.l2NetworkInterfaces.contains(intf);
     }
 
     @Override
     public MacAddress findVMacForIp(IpAddress ip) {
-        return virtualGatewayIpMacMap.get(ip);
+        return fabricState.virtualGatewayTable.findMac(ip);
     }
 
     @Override
     public L2Network findL2Network(ConnectPoint port, VlanId vlanId) {
-        for (L2Network l2Network : l2Networks) {
-            if (l2Network.contains(port, vlanId)) {
-                return l2Network;
-            }
-        }
-        return null;
+        return fabricState.l2NetworkPortMap.get(ConnectPointVlan.of(port, vlanId));
     }
 
     @Override
     public L2Network findL2Network(String name) {
-        for (L2Network l2Network : l2Networks) {
-            if (l2Network.name().equals(name)) {
-                return l2Network;
-            }
-        }
-        return null;
+        return fabricState.l2NetworkNameMap.get(name);
     }
 
     @Override
     public IpSubnet findIpSubnet(IpAddress ip) {
-        if (ip.isIp4()) {
-            return ip4SubnetTable.getValueForLongestKeyPrefixing(
-                     createBinaryString(IpPrefix.valueOf(ip, Ip4Address.BIT_LENGTH)));
-        } else {
-            return ip6SubnetTable.getValueForLongestKeyPrefixing(
-                     createBinaryString(IpPrefix.valueOf(ip, Ip6Address.BIT_LENGTH)));
-        }
+        return fabricState.ipSubnetTable.lookup(ip);
     }
 
     @Override
     public Route findBorderRoute(IpAddress ip) {
         // ASSUME: ipAddress is out of ipSubnet
-        if (ip.isIp4()) {
-            return ip4BorderRouteTable.getValueForLongestKeyPrefixing(
-                     createBinaryString(IpPrefix.valueOf(ip, Ip4Address.BIT_LENGTH)));
-        } else {
-            return ip6BorderRouteTable.getValueForLongestKeyPrefixing(
-                     createBinaryString(IpPrefix.valueOf(ip, Ip6Address.BIT_LENGTH)));
-        }
+        return borderRouteFib.lookup(ip);
+    }
+
+    @Override
+    public IpSubnet findDstIpSubnet(PacketHeader header) {
+        return fabricState.ipSubnetTable.lookup(header.isIp4(), header.dstIpHi(), header.dstIpLo());
+    }
+
+    @Override
+    public Route findDstBorderRoute(PacketHeader header) {
+        return borderRouteFib.lookup(header.isIp4(), header.dstIpHi(), header.dstIpLo());
     }
 
 
     @Override
     public Interface findHostInterface(Host host) {
-        return interfaceService.getInterfaces().stream()
-                .filter(iface -> iface.connectPoint().equals(host.location()) &&
-                                 iface.vlan().equals(host.vlan()))
-                .findFirst()
-                .orElse(null);
+        return interfacePortMap.get(ConnectPointVlan.of(host));
     }
 
     private Interface findAvailableDeviceHostInterface(Host host) {
-        return interfaceService.getInterfaces().stream()
-                .filter(iface -> iface.connectPoint().equals(host.location()) &&
-                                 iface.vlan().equals(host.vlan()))
-                .filter(iface -> deviceService.isAvailable(iface.connectPoint().deviceId()))
-                .findFirst()
-                .orElse(null);
+        Interface iface = interfacePortMap.get(ConnectPointVlan.of(host));
+        if (iface == null || !deviceService.isAvailable(iface.connectPoint().deviceId())) {
+            return null;
+        }
+        return iface;
     }
 
     @Override
-    public boolean requestMac(IpAddress ip) {
-        IpSubnet ipSubnet = findIpSubnet(ip);
-        if (ipSubnet == null) {
-            log.warn("simple fabric request mac failed for unknown IpSubnet: {}", ip);
-            return false;
-        }
-        L2Network l2Network = findL2Network(ipSubnet.l2NetworkName());
-        if (l2Network == null) {
-            log.warn("simple fabric request mac failed for unknown l2Network name {}: {}",
-                     ipSubnet.l2NetworkName(), ip);
-            return false;
-        }
-        log.debug("simple fabric send request mac L2Network {}: {}", l2Network.name(), ip);
-        for (Interface iface : l2Network.interfaces()) {
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    // advances neighbour state of the ip on a mac request; returns true if a probe is to be sent
+    private boolean admitNeighbourProbe(IpAddress ip) {
+        return neighbourTable.admitProbe(ip, System.currentTimeMillis(), this::isResolvedHost);
+    }
+
+    // serialized neighbour request frame of (gateway, target, vlan); built once and reused
+    private byte[] neighbourRequestFrame(IpSubnet ipSubnet, IpAddress ip, VlanId vlan) {
+        NeighbourFrameKey key = new NeighbourFrameKey(ipSubnet.gatewayIp(), ipSubnet.gatewayMac(), ip, vlan);
+        byte[] frame = neighbourFrames.getIfPresent(key);
+        if (frame == null) {
             Ethernet neighbourReq;
             if (ip.isIp4()) {
                 neighbourReq = ARP.buildArpRequest(ipSubnet.gatewayMac().toBytes(),
                                                    ipSubnet.gatewayIp().toOctets(),
                                                    ip.toOctets(),
-                                                   iface.vlan().toShort());
+                                                   vlan.toShort());
             } else {
                 byte[] soliciteIp = IPv6.getSolicitNodeAddress(ip.toOctets());
                 neighbourReq = NeighborSolicitation.buildNdpSolicit(
@@ -462,13 +775,67 @@ public class SimpleFabricManager extends ListenerRegistry<SimpleFabricEvent, Sim
                                                    soliciteIp,
                                                    ipSubnet.gatewayMac().toBytes(),
                                                    IPv6.getMCastMacAddress(soliciteIp),
-                                                   iface.vlan());
+                                                   vlan);
+            }
+            frame = neighbourReq.serialize();
+            neighbourFrames.put(key, frame);
+        }
+        return frame;
+    }
+
+    private boolean isResolvedHost(IpAddress ip) {
+        for (Host host : hostService.getHostsByIp(ip)) {
+            if (host.mac() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // expires neighbours and retransmits due probes of unresolved neighbours; on idle
+    private void refreshNeighbours() {
+        for (IpAddress ip : neighbourTable.refresh(System.currentTimeMillis())) {
+            requestMac(ip);  // probes again or marks failed after NEIGHBOUR_MAX_PROBES
+        }
+    }
+
+    // NOTE: the ip is admitted to the neighbour table only if a request frame is to be sent
+    @Override
+    public boolean requestMac(IpAddress ip) {
+        IpSubnet ipSubnet = findIpSubnet(ip);
+        if (ipSubnet == null) {
+            if (neighbourUnknownCount.incrementAndGet() % 1000 == 1) {
+                log.warn("simple fabric request mac failed for unknown IpSubnet: {}", ip);
+            }
+            return false;
+        }
+        L2Network l2Network = findL2Network(ipSubnet.l2NetworkName());
+        if (l2Network == null || l2Network.interfaces().isEmpty()) {
+            if (neighbourUnknownCount.incrementAndGet() % 1000 == 1) {
+                log.warn("simple fabric request mac failed for unknown or empty l2Network name {}: {}",
+                         ipSubnet.l2NetworkName(), ip);
+            }
+            return false;
+        }
+        if (!admitNeighbourProbe(ip)) {
+            return false;
+        }
+        log.debug("simple fabric send request mac L2Network {}: {}", l2Network.name(), ip);
+        // one frame per vlan and one packet-out per (device, vlan) with outputs of all its ports
+        Map<VlanId, Map<DeviceId, List<PortNumber>>> outputs = new HashMap<>();
+        for (Interface iface : l2Network.interfaces()) {
+            outputs.computeIfAbsent(iface.vlan(), vlan -> new HashMap<>())
+                   .computeIfAbsent(iface.connectPoint().deviceId(), deviceId -> new ArrayList<>())
+                   .add(iface.connectPoint().port());
+        }
+        for (Map.Entry<VlanId, Map<DeviceId, List<PortNumber>>> vlanEntry : outputs.entrySet()) {
+            byte[] frame = neighbourRequestFrame(ipSubnet, ip, vlanEntry.getKey());
+            for (Map.Entry<DeviceId, List<PortNumber>> deviceEntry : vlanEntry.getValue().entrySet()) {
+                TrafficTreatment.Builder treatment = DefaultTrafficTreatment.builder();
+                deviceEntry.getValue().forEach(treatment::setOutput);
+                packetService.emit(new DefaultOutboundPacket(deviceEntry.getKey(), treatment.build(),
+                                                             ByteBuffer.wrap(frame)));
             }
-            TrafficTreatment treatment = DefaultTrafficTreatment.builder()
-                                               .setOutput(iface.connectPoint().port()).build();
-            OutboundPacket packet = new DefaultOutboundPacket(iface.connectPoint().deviceId(),
-                                               treatment, ByteBuffer.wrap(neighbourReq.serialize()));
-            packetService.emit(packet);
         }
         return true;
     }
@@ -500,83 +867,493 @@ public class SimpleFabricManager extends ListenerRegistry<SimpleFabricEvent, Sim
             out.println("SimpleFabricAppId:");
             out.println("    " + getAppId());
             out.println("");
+            out.println("interfaces:");
+            for (Interface iface : interfaceNameMap.values()) {
+                out.println("    " + iface.name() + ": " + iface.connectPoint() + " vlan=" + iface.vlan());
+            }
+            out.println("");
+            FabricState state = fabricState;
             out.println("l2Networks:");
-            for (L2Network l2Network : getL2Networks()) {
+            for (L2Network l2Network : state.l2Networks) {
                 out.println("    " + l2Network);
             }
             out.println("");
             out.println("ipSubnets:");
-            for (IpSubnet ipSubnet : getIpSubnets()) {
+            for (IpSubnet ipSubnet : state.ipSubnets) {
                 out.println("    " + ipSubnet);
             }
             out.println("");
-            out.println("borderRoutes:");
-            for (Route route : getBorderRoutes()) {
+            out.println("borderRoutes: fib entries=" + borderRouteFib.size()
+                        + " memory=" + borderRouteFib.memoryBytes() + " bytes");
+            for (Route route : state.borderRoutes) {
                 out.println("    " + route);
             }
+        } else if (subject == "stats") {
+            synchronized (refreshMonitor) {
+                out.println("Refresh Triggers:");
+                out.println("    config=" + configTriggerCount
+                            + " delta=" + deltaTriggerCount
+                            + " pending=" + pendingTriggers);
+                out.println("    fullRefreshes=" + fullRefreshCount
+                            + " deltaRefreshes=" + deltaRefreshCount);
+                out.println("    mergedTriggers=" + mergedTriggerCount
+                            + " lastMerged=" + lastMergedTriggers
+                            + " maxMerged=" + maxMergedTriggers);
+                out.println("    REFRESH_MIN_SPACING_MSEC=" + REFRESH_MIN_SPACING_MSEC
+                            + " REFRESH_MAX_DELAY_MSEC=" + REFRESH_MAX_DELAY_MSEC);
+            }
+            out.println("");
+            out.println("Refresh Cycles:");
+            out.println("    " + refreshCycleStats);
+            out.println("    " + deltaCycleStats);
+            out.println("    " + flushCycleStats);
+            out.println("    " + idleCycleStats + " skips=" + idleSkipCount);
+            out.println("");
+            Map<NeighbourTable.State, Integer> stateCounts = neighbourTable.stateCounts(System.currentTimeMillis());
+            out.println("Neighbour Resolution:");
+            out.println("    entries=" + neighbourTable.size() + " states=" + stateCounts);
+            out.println("    " + neighbourTable + " unknown=" + neighbourUnknownCount.get());
+            out.println("");
+            out.println("Event Dispatchers:");
+            for (ListenerDispatcher dispatcher : dispatchers.values()) {
+                out.println("    " + dispatcher);
+            }
+            out.println("");
         }
     }
 
-    // Refresh action thread and notifier
+    // Neighbour request frame key
+    private static final class NeighbourFrameKey {
+        private final IpAddress gatewayIp;
+        private final MacAddress gatewayMac;
+        private final IpAddress target;
+        private final VlanId vlan;
+
+        private NeighbourFrameKey(IpAddress gatewayIp, MacAddress gatewayMac, IpAddress target, VlanId vlan) {
+            this.gatewayIp = gatewayIp;
+            this.gatewayMac = gatewayMac;
+            this.target = target;
+            this.vlan = vlan;
+        }
 
-    private class InternalRefreshThread extends Thread {
-        public void run() {
-            while (true) {
-                boolean doRefreshMarked = false;
-                boolean doFlushMarked = false;
-                synchronized (refreshMonitor) {
-                    if (!doRefresh && !doFlush) {
-                        try {
-                            refreshMonitor.wait(IDLE_INTERVAL_MSEC);
-                        } catch (InterruptedException e) {
-                        }
-                    }
-                    doRefreshMarked = doRefresh;
-                    doRefresh = false;
-                    doFlushMarked = doFlush;
-                    doFlush = false;
-                }
-                if (doRefreshMarked) {
-                    try {
-                        refresh();
-                    } catch (Exception e) {
-                        log.warn("simple fabric refresh failed: exception={}", e);
-                    }
-                }
-                if (doFlushMarked) {
-                    try {
-                        log.info("simple fabric flush execute");
-                        process(new SimpleFabricEvent(SimpleFabricEvent.Type.SIMPLE_FABRIC_FLUSH, "flush"));
-                    } catch (Exception e) {
-                        log.warn("simple fabric flush failed: exception={}", e);
-                    }
+        @Override
+        public int hashCode() {
+            return Objects.hash(gatewayIp, gatewayMac, target, vlan);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof NeighbourFrameKey)) {
+                return false;
+            }
+            NeighbourFrameKey that = (NeighbourFrameKey) obj;
+            return Objects.equals(gatewayIp, that.gatewayIp) && Objects.equals(gatewayMac, that.gatewayMac)
+                   && Objects.equals(target, that.target) && Objects.equals(vlan, that.vlan);
+        }
+    }
+
+    // Snapshot of fabric states with lookup indexes; immutable once constructed
+    // NOTE: ipSubnets, ipSubnetTable, borderRoutes and virtualGatewayTable are shared with the next state
+    //       unless changed; only the l2Network indexes are rebuilt per state
+    private static final class FabricState {
+        private static final FabricState EMPTY =
+                new FabricState(ImmutableSet.of(), ImmutableSet.of(), IpPrefixTrie.empty(), ImmutableSet.of(),
+                                buildVirtualGatewayTable(ImmutableSet.of()));
+
+        private final Set<L2Network> l2Networks;
+        private final Set<Interface> l2NetworkInterfaces;
+        private final Map<String, L2Network> l2NetworkNameMap;
+        private final Map<ConnectPointVlan, L2Network> l2NetworkPortMap;
+        private final Set<IpSubnet> ipSubnets;
+        private final IpPrefixTrie<IpSubnet> ipSubnetTable;
+        private final Set<Route> borderRoutes;
+        private final VirtualGatewayTable virtualGatewayTable;
+
+        private FabricState(Set<L2Network> l2Networks, Set<IpSubnet> ipSubnets,
+                            IpPrefixTrie<IpSubnet> ipSubnetTable, Set<Route> borderRoutes,
+                            VirtualGatewayTable virtualGatewayTable) {
+            Set<Interface> interfaces = new HashSet<>();
+            Map<String, L2Network> nameMap = new HashMap<>();
+            Map<ConnectPointVlan, L2Network> portMap = new HashMap<>();
+            for (L2Network l2Network : l2Networks) {
+                nameMap.put(l2Network.name(), l2Network);
+                for (Interface iface : l2Network.interfaces()) {
+                    interfaces.add(iface);
+                    portMap.putIfAbsent(ConnectPointVlan.of(iface), l2Network);
                 }
-                if (!doRefreshMarked && !doFlushMarked) {
-                    try {
-                        if (!refresh()) {
-                            process(new SimpleFabricEvent(SimpleFabricEvent.Type.SIMPLE_FABRIC_IDLE, "idle"));
-                        }
-                    } catch (Exception e) {
-                        log.warn("simple fabric idle failed: exception={}", e);
-                    }
+            }
+            this.l2Networks = ImmutableSet.copyOf(l2Networks);
+            this.l2NetworkInterfaces = ImmutableSet.copyOf(interfaces);
+            this.l2NetworkNameMap = ImmutableMap.copyOf(nameMap);
+            this.l2NetworkPortMap = ImmutableMap.copyOf(portMap);
+            this.ipSubnets = ImmutableSet.copyOf(ipSubnets);  // no copy if already immutable
+            this.ipSubnetTable = ipSubnetTable;
+            this.borderRoutes = ImmutableSet.copyOf(borderRoutes);  // no copy if already immutable
+            this.virtualGatewayTable = virtualGatewayTable;
+        }
+
+        // new state with l2Networks replaced; other states are shared as they are
+        private FabricState withL2Networks(Set<L2Network> newL2Networks) {
+            return new FabricState(newL2Networks, ipSubnets, ipSubnetTable, borderRoutes, virtualGatewayTable);
+        }
+
+        // virtual gateway table of the ipSubnets; built only when ipSubnets are changed
+        private static VirtualGatewayTable buildVirtualGatewayTable(Set<IpSubnet> ipSubnets) {
+            Map<IpAddress, MacAddress> gatewayIpMacMap = new HashMap<>();
+            for (IpSubnet subnet : ipSubnets) {
+                gatewayIpMacMap.put(subnet.gatewayIp(), subnet.gatewayMac());
+            }
+            return VirtualGatewayTable.of(gatewayIpMacMap);
+        }
+    }
+
+    // Refresh tasks and triggers
+
+    private void runRefresh() {
+        synchronized (refreshMonitor) {
+            if (!doRefresh) {
+                return;
+            }
+            countMergedTriggers(true);
+            doRefresh = false;
+            // full refresh covers pending deltas
+            doDelta = false;
+            pendingDeviceIds = new HashSet<>();
+            pendingInterfaceNames = new HashSet<>();
+            pendingHostIds = new HashSet<>();
+        }
+        long startTime = System.currentTimeMillis();
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.warn("simple fabric refresh failed: exception={}", e);
+        }
+        endCycle(refreshCycleStats, startTime);
+    }
+
+    private void runDelta() {
+        Set<DeviceId> deltaDeviceIds;
+        Set<String> deltaInterfaceNames;
+        Set<HostId> deltaHostIds;
+        synchronized (refreshMonitor) {
+            deltaFuture = null;
+            if (!doDelta) {
+                return;
+            }
+            // reschedule if more triggers arrived after scheduled
+            long delay = deltaDueTime() - System.currentTimeMillis();
+            if (delay > 0) {
+                deltaFuture = scheduleRefreshTask(this::runDelta, delay);
+                return;
+            }
+            countMergedTriggers(false);
+            doDelta = false;
+            deltaDeviceIds = pendingDeviceIds;
+            pendingDeviceIds = new HashSet<>();
+            deltaInterfaceNames = pendingInterfaceNames;
+            pendingInterfaceNames = new HashSet<>();
+            deltaHostIds = pendingHostIds;
+            pendingHostIds = new HashSet<>();
+        }
+        long startTime = System.currentTimeMillis();
+        try {
+            refreshDelta(deltaDeviceIds, deltaInterfaceNames, deltaHostIds);
+        } catch (Exception e) {
+            log.warn("simple fabric delta refresh failed: exception={}", e);
+        }
+        endCycle(deltaCycleStats, startTime);
+    }
+
+    private void runFlush() {
+        synchronized (refreshMonitor) {
+            if (!doFlush) {
+                return;
+            }
+            doFlush = false;
+        }
+        long startTime = System.currentTimeMillis();
+        try {
+            log.info("simple fabric flush execute");
+            process(new SimpleFabricEvent(SimpleFabricEvent.Type.SIMPLE_FABRIC_FLUSH, "flush"));
+        } catch (Exception e) {
+            log.warn("simple fabric flush failed: exception={}", e);
+        }
+        endCycle(flushCycleStats, startTime);
+    }
+
+    // idle task reschedules itself; deferred after an overrun cycle up to IDLE_MAX_GAP_MSEC,
+    // stretched on its own overrun
+    private void runIdle() {
+        long startTime = System.currentTimeMillis();
+        long quietTime = startTime - lastCycleEndTime;
+        long idleGap = startTime - lastIdleRunTime;
+        if (lastCycleOverran && quietTime < IDLE_INTERVAL_MSEC && idleGap < IDLE_MAX_GAP_MSEC) {
+            idleSkipCount++;
+            scheduleIdle(Math.min(IDLE_INTERVAL_MSEC - quietTime, IDLE_MAX_GAP_MSEC - idleGap));
+            return;
+        }
+        lastIdleRunTime = startTime;
+        try {
+            // full rebuild runs periodically as consistency check only
+            boolean dirty = false;
+            if (startTime - lastFullRefreshTime >= FULL_REFRESH_INTERVAL_MSEC) {
+                dirty = refresh();
+                if (dirty) {
+                    log.warn("simple fabric consistency check found missed updates");
                 }
             }
+            refreshNeighbours();
+            if (!dirty) {
+                process(new SimpleFabricEvent(SimpleFabricEvent.Type.SIMPLE_FABRIC_IDLE, "idle"));
+            }
+        } catch (Exception e) {
+            log.warn("simple fabric idle failed: exception={}", e);
+        }
+        long duration = idleCycleStats.record(System.currentTimeMillis() - startTime);
+        scheduleIdle(Math.max(IDLE_INTERVAL_MSEC, duration));
+    }
+
+    private void scheduleIdle(long delay) {
+        scheduleRefreshTask(this::runIdle, delay);
+    }
+
+    private void endCycle(CycleStats stats, long startTime) {
+        lastCycleEndTime = System.currentTimeMillis();
+        lastCycleOverran = stats.record(lastCycleEndTime - startTime) > IDLE_INTERVAL_MSEC;
+    }
+
+    // due time of pending delta refresh; guarded by refreshMonitor
+    // runs after REFRESH_MIN_SPACING_MSEC of quiet time since the last trigger and the last delta refresh,
+    // but no later than REFRESH_MAX_DELAY_MSEC since the first trigger
+    private long deltaDueTime() {
+        long spacedTime = Math.max(lastTriggerTime, lastDeltaRefreshTime) + REFRESH_MIN_SPACING_MSEC;
+        return Math.min(spacedTime, firstTriggerTime + REFRESH_MAX_DELAY_MSEC);
+    }
+
+    // updates merge counters on taking pending triggers; guarded by refreshMonitor
+    private void countMergedTriggers(boolean isFullRefresh) {
+        if (isFullRefresh) {
+            fullRefreshCount++;
+        } else {
+            deltaRefreshCount++;
+            lastDeltaRefreshTime = System.currentTimeMillis();
+        }
+        mergedTriggerCount += Math.max(pendingTriggers - 1, 0);
+        lastMergedTriggers = pendingTriggers;
+        maxMergedTriggers = Math.max(maxMergedTriggers, pendingTriggers);
+        pendingTriggers = 0;
+    }
+
+    // schedules task on refreshExecutor; returns null if not active
+    private ScheduledFuture<?> scheduleRefreshTask(Runnable task, long delay) {
+        ScheduledExecutorService executor = refreshExecutor;
+        if (executor == null) {
+            return null;  // not activated; initial refresh on activation covers
+        }
+        try {
+            return executor.schedule(task, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.debug("simple fabric refresh task not scheduled on shutdown");
+            return null;
         }
     }
 
     @Override
     public void triggerRefresh() {
+        configChanged = true;
+        synchronized (refreshMonitor) {
+            pendingTriggers++;
+            configTriggerCount++;
+            if (!doRefresh) {
+                doRefresh = true;
+                scheduleRefreshTask(this::runRefresh, 0);
+            }
+        }
+    }
+
+    private void triggerDelta(Set<DeviceId> deviceIds, Set<String> ifaceNames, Set<HostId> hostIds) {
         synchronized (refreshMonitor) {
-            doRefresh = true;
-            refreshMonitor.notifyAll();
+            pendingDeviceIds.addAll(deviceIds);
+            pendingInterfaceNames.addAll(ifaceNames);
+            pendingHostIds.addAll(hostIds);
+            long now = System.currentTimeMillis();
+            if (!doDelta) {
+                firstTriggerTime = now;
+            }
+            lastTriggerTime = now;
+            doDelta = true;
+            pendingTriggers++;
+            deltaTriggerCount++;
+            if (deltaFuture == null) {
+                deltaFuture = scheduleRefreshTask(this::runDelta, deltaDueTime() - now);
+            }
         }
     }
 
     @Override
     public void triggerFlush() {
         synchronized (refreshMonitor) {
-            doFlush = true;
-            refreshMonitor.notifyAll();
+            if (!doFlush) {
+                doFlush = true;
+                scheduleRefreshTask(this::runFlush, 0);
+            }
+        }
+    }
+
+    // Dispatches events to a listener on its own thread with a bounded collapsing queue
+    private final class ListenerDispatcher {
+        private final SimpleFabricListener listener;
+        private final String name;
+        private final ExecutorService executor;
+        private final Deque<SimpleFabricEvent> queue = new ArrayDeque<>();  // guarded by this
+        private boolean draining = false;   // guarded by this
+        private long deliveredCount = 0;    // guarded by this
+        private long collapsedCount = 0;    // guarded by this
+        private long droppedCount = 0;      // guarded by this
+        private long lastLagMsec = 0;       // guarded by this
+        private long maxLagMsec = 0;        // guarded by this
+
+        private ListenerDispatcher(SimpleFabricListener listener) {
+            this.listener = listener;
+            String className = listener.getClass().getName();
+            this.name = className.substring(className.lastIndexOf('.') + 1);
+            this.executor = Executors.newSingleThreadExecutor(
+                    groupedThreads("onos/simplefabric", "event-%d", log));
+        }
+
+        // IDLE and UPDATED collapse into one of the same type queued after the last queued FLUSH;
+        // listeners read the current fabric states on handling, so the earlier one covers the later one
+        private synchronized void enqueue(SimpleFabricEvent event) {
+            if (!listener.isRelevant(event)) {
+                return;
+            }
+            SimpleFabricEvent.Type type = event.type();
+            if (type == SimpleFabricEvent.Type.SIMPLE_FABRIC_IDLE
+                    || type == SimpleFabricEvent.Type.SIMPLE_FABRIC_UPDATED) {
+                Iterator<SimpleFabricEvent> it = queue.descendingIterator();
+                while (it.hasNext()) {
+                    SimpleFabricEvent.Type queuedType = it.next().type();
+                    if (queuedType == SimpleFabricEvent.Type.SIMPLE_FABRIC_FLUSH) {
+                        break;  // must be handled after the flush
+                    }
+                    if (queuedType == type) {
+                        collapsedCount++;
+                        return;
+                    }
+                }
+            }
+            if (queue.size() >= EVENT_QUEUE_SIZE && !makeRoom(type)) {
+                droppedCount++;
+                log.warn("simple fabric event queue full; drop event: listener={} event={}", name, type);
+                return;
+            }
+            queue.addLast(event);
+            if (!draining) {
+                draining = true;
+                try {
+                    executor.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    draining = false;
+                    log.debug("simple fabric event dispatcher shut down: listener={}", name);
+                }
+            }
+        }
+
+        // makes room in the full queue for the event; guarded by this
+        // FLUSH and UPDATED are never dropped, for a lost one is never repeated; they evict a queued IDLE,
+        // else go over EVENT_QUEUE_SIZE which is bounded as UPDATED collapses after the last FLUSH
+        private boolean makeRoom(SimpleFabricEvent.Type type) {
+            if (type == SimpleFabricEvent.Type.SIMPLE_FABRIC_IDLE) {
+                return false;  // the next idle event does the same
+            }
+            Iterator<SimpleFabricEvent> it = queue.iterator();
+            while (it.hasNext()) {
+                if (it.next().type() == SimpleFabricEvent.Type.SIMPLE_FABRIC_IDLE) {
+                    it.remove();
+                    droppedCount++;
+                    return true;
+                }
+            }
+            return type == SimpleFabricEvent.Type.SIMPLE_FABRIC_FLUSH
+                    || type == SimpleFabricEvent.Type.SIMPLE_FABRIC_UPDATED;
+        }
+
+        private void drain() {
+            while (true) {
+                SimpleFabricEvent event;
+                synchronized (this) {
+                    event = queue.pollFirst();
+                    if (event == null) {
+                        draining = false;
+                        return;
+                    }
+                    lastLagMsec = System.currentTimeMillis() - event.time();
+                    maxLagMsec = Math.max(maxLagMsec, lastLagMsec);
+                    deliveredCount++;
+                }
+                try {
+                    listener.event(event);
+                } catch (Exception e) {
+                    log.warn("simple fabric listener failed: listener={} event={} exception={}",
+                             name, event.type(), e);
+                }
+            }
+        }
+
+        private void shutdown() {
+            executor.shutdownNow();
+            synchronized (this) {
+                queue.clear();
+            }
+        }
+
+        @Override
+        public synchronized String toString() {
+            return name + ": depth=" + queue.size()
+                    + " delivered=" + deliveredCount
+                    + " collapsed=" + collapsedCount
+                    + " dropped=" + droppedCount
+                    + " lastLagMsec=" + lastLagMsec
+                    + " maxLagMsec=" + maxLagMsec;
+        }
+    }
+
+    // Duration statistics of a refresh task cycle
+    private final class CycleStats {
+        private final String name;
+        private long count = 0;
+        private long overrunCount = 0;
+        private long lastMsec = 0;
+        private long maxMsec = 0;
+        private long totalMsec = 0;
+
+        private CycleStats(String name) {
+            this.name = name;
+        }
+
+        // records a cycle duration; returns the duration
+        private synchronized long record(long msec) {
+            count++;
+            lastMsec = msec;
+            maxMsec = Math.max(maxMsec, msec);
+            totalMsec += msec;
+            if (msec > IDLE_INTERVAL_MSEC) {
+                overrunCount++;
+                log.warn("simple fabric {} cycle overran idle interval: {} msec", name, msec);
+            }
+            return msec;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return name + ": count=" + count
+                    + " lastMsec=" + lastMsec
+                    + " maxMsec=" + maxMsec
+                    + " avgMsec=" + ((count > 0) ? totalMsec / count : 0)
+                    + " overruns=" + overrunCount;
         }
     }
 
@@ -614,7 +1391,7 @@ public class SimpleFabricManager extends ListenerRegistry<SimpleFabricEvent, Sim
             case PORT_REMOVED:
             case PORT_UPDATED:
             // case PORT_STATS_UPDATED:  IGNORED
-                triggerRefresh();
+                triggerDelta(ImmutableSet.of(event.subject().id()), ImmutableSet.of(), ImmutableSet.of());
                 break;
             default:
                 break;
@@ -626,13 +1403,19 @@ public class SimpleFabricManager extends ListenerRegistry<SimpleFabricEvent, Sim
         @Override
         public void event(HostEvent event) {
             Host host = event.subject();
-            Host prevHost = event.prevSubject();
             switch (event.type()) {
             case HOST_MOVED:
             case HOST_REMOVED:
             case HOST_ADDED:
             case HOST_UPDATED:
-                triggerRefresh();
+                if (event.type() == HostEvent.Type.HOST_REMOVED) {
+                    removeHostIndex(host.id());
+                } else {
+                    updateHostIndex(host);
+                }
+                neighbourTable.updateHost(host.ipAddresses(), event.type() == HostEvent.Type.HOST_REMOVED,
+                                          System.currentTimeMillis());
+                triggerDelta(ImmutableSet.of(), ImmutableSet.of(), ImmutableSet.of(host.id()));
                 break;
             default:
                 break;
@@ -649,7 +1432,20 @@ public class SimpleFabricManager extends ListenerRegistry<SimpleFabricEvent, Sim
             case INTERFACE_ADDED:
             case INTERFACE_REMOVED:
             case INTERFACE_UPDATED:
-                triggerRefresh();
+                if (prevIface != null) {
+                    removeInterfaceIndex(prevIface);
+                }
+                if (event.type() == InterfaceEvent.Type.INTERFACE_REMOVED) {
+                    removeInterfaceIndex(iface);
+                } else {
+                    addInterfaceIndex(iface);
+                }
+                Set<String> ifaceNames = new HashSet<>();
+                ifaceNames.add(iface.name());
+                if (prevIface != null) {
+                    ifaceNames.add(prevIface.name());
+                }
+                triggerDelta(ImmutableSet.of(), ifaceNames, ImmutableSet.of());
                 break;
             default:
                 break;
@@ -20,20 +20,33 @@ import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
+import org.onlab.packet.Ethernet;
 import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.core.CoreService;
 import org.onosproject.net.intf.Interface;
 import org.onosproject.net.intf.InterfaceService;
+import org.onosproject.net.DeviceId;
+import org.onosproject.net.PortNumber;
+import org.onosproject.net.flow.DefaultTrafficTreatment;
+import org.onosproject.net.flow.TrafficTreatment;
 import org.onosproject.net.neighbour.NeighbourMessageContext;
 import org.onosproject.net.neighbour.NeighbourMessageHandler;
 import org.onosproject.net.neighbour.NeighbourResolutionService;
 import org.onosproject.net.Host;
 import org.onosproject.net.host.HostService;
+import org.onosproject.net.packet.DefaultOutboundPacket;
+import org.onosproject.net.packet.PacketService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
@@ -60,6 +73,9 @@ public class SimpleFabricNeighbour {
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected NeighbourResolutionService neighbourService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected PacketService packetService;
+
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected SimpleFabricService simpleFabric;
 
@@ -156,12 +172,7 @@ public class SimpleFabricNeighbour {
             // else do broadcast to all host in the same l2 network
             log.trace("simple fabric neightbour request forward broadcast: {} {}",
                      context.inPort(), context.vlan());
-            for (Interface iface : l2Network.interfaces()) {
-                if (!context.inPort().equals(iface.connectPoint())) {
-                    log.trace("simple fabric forward neighbour request broadcast to {}", iface);
-                    context.forward(iface);
-                }
-            }
+            broadcast(context, l2Network);
         } else {
             log.warn("simple fabric neightbour request drop: {} {}",
                      context.inPort(), context.vlan());
@@ -169,6 +180,41 @@ public class SimpleFabricNeighbour {
         }
     }
 
+    /**
+     * Broadcasts the message to all interfaces of the L2 Network except the in port.
+     * The frame is serialized once per vlan and sent with one packet-out per (device, vlan)
+     * with outputs of all ports, as context.forward(iface) does per interface.
+     *
+     * @param context the message context
+     * @param l2Network the L2 Network to broadcast
+     */
+    protected void broadcast(NeighbourMessageContext context, L2Network l2Network) {
+        Map<VlanId, Map<DeviceId, List<PortNumber>>> outputs = new HashMap<>();
+        for (Interface iface : l2Network.interfaces()) {
+            if (!context.inPort().equals(iface.connectPoint())) {
+                log.trace("simple fabric forward neighbour request broadcast to {}", iface);
+                outputs.computeIfAbsent(iface.vlan(), vlan -> new HashMap<>())
+                       .computeIfAbsent(iface.connectPoint().deviceId(), deviceId -> new ArrayList<>())
+                       .add(iface.connectPoint().port());
+            }
+        }
+        for (Map.Entry<VlanId, Map<DeviceId, List<PortNumber>>> vlanEntry : outputs.entrySet()) {
+            Ethernet packetOut = (Ethernet) context.packet().duplicate();
+            if (vlanEntry.getKey().equals(VlanId.NONE)) {
+                packetOut.setVlanID(Ethernet.VLAN_UNTAGGED);
+            } else {
+                packetOut.setVlanID(vlanEntry.getKey().toShort());
+            }
+            byte[] frame = packetOut.serialize();
+            for (Map.Entry<DeviceId, List<PortNumber>> deviceEntry : vlanEntry.getValue().entrySet()) {
+                TrafficTreatment.Builder treatment = DefaultTrafficTreatment.builder();
+                deviceEntry.getValue().forEach(treatment::setOutput);
+                packetService.emit(new DefaultOutboundPacket(deviceEntry.getKey(), treatment.build(),
+                                                             ByteBuffer.wrap(frame)));
+            }
+        }
+    }
+
     /**
      * Handles reply messages between VLAN tagged interfaces.
      *
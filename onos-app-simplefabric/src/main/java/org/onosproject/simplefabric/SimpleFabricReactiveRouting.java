@@ -15,13 +15,19 @@
  */
 package org.onosproject.simplefabric;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.felix.scr.annotations.Activate;
 import org.apache.felix.scr.annotations.Component;
 import org.apache.felix.scr.annotations.Deactivate;
 import org.apache.felix.scr.annotations.Reference;
 import org.apache.felix.scr.annotations.ReferenceCardinality;
-import org.onlab.packet.EthType;
 import org.onlab.packet.Ethernet;
 import org.onlab.packet.ICMP;
 import org.onlab.packet.ICMP6;
@@ -35,13 +41,22 @@ import org.onlab.packet.Ip6Address;
 import org.onlab.packet.Ip6Prefix;
 import org.onlab.packet.MacAddress;
 import org.onlab.packet.VlanId;
+import org.onosproject.cluster.NodeId;
 import org.onosproject.core.ApplicationId;
 import org.onosproject.core.CoreService;
+import org.onosproject.mastership.MastershipService;
+import org.onosproject.store.cluster.messaging.ClusterCommunicationService;
+import org.onosproject.store.cluster.messaging.MessageSubject;
+import org.onosproject.store.serializers.KryoNamespaces;
+import org.onosproject.store.service.Serializer;
 import org.onosproject.net.intf.InterfaceService;
 import org.onosproject.net.ConnectPoint;
 import org.onosproject.net.EncapsulationType;
 import org.onosproject.net.Device;
 import org.onosproject.net.DeviceId;
+import org.onosproject.net.Link;
+import org.onosproject.net.Path;
+import org.onosproject.net.PortNumber;
 import org.onosproject.net.device.DeviceService;
 import org.onosproject.net.flow.DefaultFlowRule;
 import org.onosproject.net.flow.DefaultTrafficSelector;
@@ -49,8 +64,11 @@ import org.onosproject.net.flow.DefaultTrafficTreatment;
 import org.onosproject.net.flow.TrafficSelector;
 import org.onosproject.net.flow.TrafficTreatment;
 import org.onosproject.net.flow.FlowRule;
+import org.onosproject.net.flow.FlowRuleOperations;
 import org.onosproject.net.flow.FlowRuleService;
 import org.onosproject.net.Host;
+import org.onosproject.net.host.HostEvent;
+import org.onosproject.net.host.HostListener;
 import org.onosproject.net.host.HostService;
 import org.onosproject.net.intent.Constraint;
 import org.onosproject.net.intent.constraint.EncapsulationConstraint;
@@ -60,6 +78,7 @@ import org.onosproject.net.intent.Intent;
 import org.onosproject.net.intent.IntentService;
 import org.onosproject.net.intent.Key;
 import org.onosproject.net.intent.MultiPointToSinglePointIntent;
+import org.onosproject.net.intent.WorkPartitionService;
 import org.onosproject.net.intf.Interface;
 import org.onosproject.net.link.LinkService;
 import org.onosproject.net.packet.DefaultOutboundPacket;
@@ -69,17 +88,33 @@ import org.onosproject.net.packet.PacketContext;
 import org.onosproject.net.packet.PacketPriority;
 import org.onosproject.net.packet.PacketProcessor;
 import org.onosproject.net.packet.PacketService;
+import org.onosproject.net.topology.Topology;
+import org.onosproject.net.topology.TopologyService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.PrintStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.onlab.util.Tools.groupedThreads;
 
 
 /**
@@ -91,6 +126,11 @@ public class SimpleFabricReactiveRouting {
     private final Logger log = LoggerFactory.getLogger(getClass());
     private ApplicationId reactiveAppId;
 
+    // route submits of the keys owned by other nodes are sent to the owner node
+    private static final MessageSubject SUBMIT_SUBJECT = new MessageSubject("simplefabric-reactive-submit");
+    private static final Serializer SERIALIZER = Serializer.using(Arrays.asList(KryoNamespaces.API),
+                                                                      SubmitRequest.class);
+
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected CoreService coreService;
 
@@ -115,6 +155,18 @@ public class SimpleFabricReactiveRouting {
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected FlowRuleService flowRuleService;
 
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected TopologyService topologyService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected WorkPartitionService workPartitionService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected MastershipService mastershipService;
+
+    @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
+    protected ClusterCommunicationService clusterCommunicator;
+
     @Reference(cardinality = ReferenceCardinality.MANDATORY_UNARY)
     protected SimpleFabricService simpleFabric;
 
@@ -125,10 +177,75 @@ public class SimpleFabricReactiveRouting {
             //       for unpredictable srcCp of Link appears as reactive packet traffic
 
     private Set<FlowRule> interceptFlowRules = new HashSet<>();
-    private Set<Key> toBePurgedIntentKeys = new HashSet<>();
+            // NOTE: for devices mastered by this node only; other nodes install for their devices
+    private final Set<Key> toBePurgedIntentKeys = Sets.newConcurrentHashSet();
             // NOTE: manage purged intents by key for intentService.getIntent() supports key only
 
+    // routing decisions per (srcIp, dstIp, srcCp); validated by simpleFabric.getGeneration()
+    // and invalidated per next hop ip on host events
+    private final Cache<DecisionKey, ReactiveDecision> decisionCache = CacheBuilder.newBuilder()
+            .maximumSize(SimpleFabricService.REACTIVE_DECISION_CACHE_SIZE)
+            .recordStats()
+            .build();
+    private final AtomicLong hostEventCount = new AtomicLong();  // decisions computed over a host event are not cached
+    private final AtomicLong decisionInvalidateCount = new AtomicLong();
+
+    // in-flight setups per (intent key, srcCp) with the decision set up; expires on setup timeout
+    private final Cache<SetupKey, ReactiveDecision> pendingSetups = CacheBuilder.newBuilder()
+            .maximumSize(SimpleFabricService.REACTIVE_SETUP_TABLE_SIZE)
+            .expireAfterWrite(SimpleFabricService.REACTIVE_SETUP_TIMEOUT_MSEC, TimeUnit.MILLISECONDS)
+            .build();
+    private final AtomicLong setupHitCount = new AtomicLong();
+    private final AtomicLong setupMissCount = new AtomicLong();
+
+    // packet-in admission token buckets per ingress port and per (ingress port, srcIp)
+    private final Cache<ConnectPoint, TokenBucket> portBuckets = CacheBuilder.newBuilder()
+            .maximumSize(SimpleFabricService.REACTIVE_ADMISSION_TABLE_SIZE)
+            .expireAfterAccess(SimpleFabricService.REACTIVE_ADMISSION_IDLE_MSEC, TimeUnit.MILLISECONDS)
+            .build();
+    private final Cache<SourceKey, TokenBucket> srcBuckets = CacheBuilder.newBuilder()
+            .maximumSize(SimpleFabricService.REACTIVE_ADMISSION_TABLE_SIZE)
+            .expireAfterAccess(SimpleFabricService.REACTIVE_ADMISSION_IDLE_MSEC, TimeUnit.MILLISECONDS)
+            .build();
+    private final AtomicLong admittedCount = new AtomicLong();
+    private final AtomicLong portDropCount = new AtomicLong();
+    private final AtomicLong srcDropCount = new AtomicLong();
+
+    // direct flow rule routes by key on REACTIVE_DIRECT_FLOW_RULES; local to this node,
+    // so kept for the keys owned by this node only
+    private final Map<Key, DirectRoute> directRoutes = new HashMap<>();
+
+    // packet workers striped by destination prefix; keeps packet order and intent key handling per stripe
+    private volatile ThreadPoolExecutor[] workers;
+    private final AtomicLong workerDropCount = new AtomicLong();
+
+    // route keys provisioned proactively by this node; bounded by REACTIVE_PROACTIVE_ROUTES_MAX
+    private final Set<Key> proactiveRouteKeys = Sets.newConcurrentHashSet();
+    private final AtomicLong proactiveSkipCount = new AtomicLong();
+
+    // border routes by next hop ip for proactive host routes; updated on fabric event thread only
+    private Set<Route> indexedBorderRoutes = ImmutableSet.of();
+    private volatile Map<IpAddress, Set<Route>> borderRoutesByNextHop = ImmutableMap.of();
+
+    // packets held per unresolved next hop ip
+    private final HoldQueueTable<ReactivePacket> holdQueues = new HoldQueueTable<>(
+            SimpleFabricService.REACTIVE_HOLD_NEXT_HOPS, SimpleFabricService.REACTIVE_HOLD_QUEUE_SIZE,
+            SimpleFabricService.REACTIVE_HOLD_QUEUE_BYTES, SimpleFabricService.REACTIVE_HOLD_TTL_MSEC,
+            packet -> packet.size);
+
+    // intent submit requests merged per key; flushed on submitExecutor after REACTIVE_SUBMIT_WINDOW_MSEC
+    private final Map<Key, PendingSubmit> pendingSubmits = Maps.newHashMap();
+    private volatile ScheduledExecutorService submitExecutor;
+    private long submitRequestCount = 0;    // guarded by pendingSubmits
+    private long submitMergedCount = 0;     // guarded by pendingSubmits
+    private long submitBatchCount = 0;      // guarded by pendingSubmits
+    private long submitIntentCount = 0;     // guarded by pendingSubmits
+    private long submitUnchangedCount = 0;  // guarded by pendingSubmits
+    private long submitFailedCount = 0;     // guarded by pendingSubmits
+    private long submitForwardCount = 0;    // guarded by pendingSubmits
+
     private final InternalSimpleFabricListener simpleFabricListener = new InternalSimpleFabricListener();
+    private final InternalHostListener hostListener = new InternalHostListener();
     private ReactiveRoutingProcessor processor = new ReactiveRoutingProcessor();
 
     @Activate
@@ -146,9 +263,22 @@ public class SimpleFabricReactiveRouting {
             reactiveConstraints = ImmutableList.of(new PartialFailureConstraint());
         }
 
+        submitExecutor = Executors.newSingleThreadScheduledExecutor(
+                groupedThreads("onos/simplefabric", "reactive-submit", log));
+        clusterCommunicator.addSubscriber(SUBMIT_SUBJECT, SERIALIZER::decode, this::handleSubmitRequest,
+                                          submitExecutor);
+        ThreadPoolExecutor[] newWorkers = new ThreadPoolExecutor[simpleFabric.REACTIVE_WORKER_STRIPES];
+        for (int i = 0; i < newWorkers.length; i++) {
+            newWorkers[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(simpleFabric.REACTIVE_WORKER_QUEUE_SIZE),
+                    groupedThreads("onos/simplefabric", "reactive-" + i, log));
+        }
+        workers = newWorkers;
+
         processor = new ReactiveRoutingProcessor();
         packetService.addProcessor(processor, PacketProcessor.director(2));
         simpleFabric.addListener(simpleFabricListener);
+        hostService.addListener(hostListener);
 
         registerIntercepts();
         refreshIntercepts();
@@ -162,6 +292,19 @@ public class SimpleFabricReactiveRouting {
 
         packetService.removeProcessor(processor);
         simpleFabric.removeListener(simpleFabricListener);
+        hostService.removeListener(hostListener);
+        clusterCommunicator.removeSubscriber(SUBMIT_SUBJECT);
+
+        for (ThreadPoolExecutor worker : workers) {
+            worker.shutdownNow();
+        }
+        workers = null;
+        submitExecutor.shutdownNow();
+        submitExecutor = null;
+        synchronized (pendingSubmits) {
+            pendingSubmits.clear();
+        }
+        holdQueues.clear();
 
         withdrawIntercepts();
 
@@ -169,6 +312,14 @@ public class SimpleFabricReactiveRouting {
         //       use flush event from simple fabric cli command
 
         toBePurgedIntentKeys.clear();
+        proactiveRouteKeys.clear();
+        synchronized (directRoutes) {
+            directRoutes.clear();  // flow rules are removed by app id below
+        }
+        decisionCache.invalidateAll();
+        pendingSetups.invalidateAll();
+        portBuckets.invalidateAll();
+        srcBuckets.invalidateAll();
 
         flowRuleService.removeFlowRulesById(reactiveAppId);
 
@@ -221,6 +372,9 @@ public class SimpleFabricReactiveRouting {
     private void refreshIntercepts() {
         Set<FlowRule> newInterceptFlowRules = new HashSet<>();
         for (Device device : deviceService.getAvailableDevices()) {
+            if (!mastershipService.isLocalMaster(device.id())) {
+                continue;
+            }
             for (IpSubnet subnet : simpleFabric.getIpSubnets()) {
                 newInterceptFlowRules.add(generateInterceptFlowRule(true, device.id(), subnet.ipPrefix()));
                 // check if this devices has the ipSubnet, then add ip broadcast flue rule
@@ -323,19 +477,13 @@ public class SimpleFabricReactiveRouting {
      */
     private void refreshRouteIntents() {
         for (Intent entry : intentService.getIntents()) {
-            if (!reactiveAppId.equals(entry.appId())) {
+            // check partition ownership by key first; cheaper than any intent store lookup below
+            if (!reactiveAppId.equals(entry.appId()) || !isMine(entry.key())) {
                 continue;
             }
 
             MultiPointToSinglePointIntent intent = (MultiPointToSinglePointIntent) entry;
 
-            if (!intentService.isLocal(intent.key())) {
-                if (toBePurgedIntentKeys.contains(intent.key())) {
-                    toBePurgedIntentKeys.remove(intent.key());  // clear non local intent
-                }
-                continue;
-            }
-
             try {
                 switch (intentService.getIntentState(intent.key())) {
                 //case FAILED:   // failed intent is not auto removed
@@ -423,14 +571,16 @@ public class SimpleFabricReactiveRouting {
         if (!toBePurgedIntentKeys.isEmpty()) {
             Set<Key> removeKeys = new HashSet<>();
             for (Key key : toBePurgedIntentKeys) {
-                if (!intentService.isLocal(key)) {
+                if (!isMine(key)) {
                     removeKeys.add(key);
+                    proactiveRouteKeys.remove(key);
                     continue;
                 }
                 Intent intentToPurge = intentService.getIntent(key);
                 if (intentToPurge == null) {
                     log.info("purged intent: key={}", key);
                     removeKeys.add(key);
+                    proactiveRouteKeys.remove(key);
                 } else {
                     switch (intentService.getIntentState(key)) {
                     // case FAILED:  // not auto removed
@@ -508,162 +658,214 @@ public class SimpleFabricReactiveRouting {
         @Override
         public void process(PacketContext context) {
             InboundPacket pkt = context.inPacket();
-            Ethernet ethPkt = pkt.parsed();
-            if (ethPkt == null) {
-                return;
+            // read ip header fields from raw frame; parsed packet is decoded only for gateway icmp
+            PacketHeader header = PacketHeader.parse(pkt.unparsed());
+            if (header == null) {
+                return;  // ignore unknow ether type or truncated packets
             }
             ConnectPoint srcCp = pkt.receivedFrom();
-            IpAddress srcIp;
-            IpAddress dstIp;
-            byte ipProto = 0;  /* 0 or tcp, udp */
-
-            switch (EthType.EtherType.lookup(ethPkt.getEtherType())) {
-            case IPV4:
-                IPv4 ipv4Packet = (IPv4) ethPkt.getPayload();
-                srcIp = IpAddress.valueOf(ipv4Packet.getSourceAddress());
-                dstIp = IpAddress.valueOf(ipv4Packet.getDestinationAddress());
-                ipProto = ipv4Packet.getProtocol();
-                break;
-            case IPV6:
-                IPv6 ipv6Packet = (IPv6) ethPkt.getPayload();
-                srcIp = IpAddress.valueOf(IpAddress.Version.INET6, ipv6Packet.getSourceAddress());
-                dstIp = IpAddress.valueOf(IpAddress.Version.INET6, ipv6Packet.getDestinationAddress());
-                ipProto = ipv6Packet.getNextHeader();
-                break;
-            default:
-                return;  // ignore unknow ether type packets
-            }
+            IpAddress srcIp = header.srcIp();
+            byte ipProto = header.ipProto();  /* 0 or tcp, udp */
             if (ipProto != 6 && ipProto != 17) {
                 ipProto = 0;  /* handle special for TCP and UDP only */
             }
 
-            if (!checkVirtualGatewayIpPacket(pkt, srcIp, dstIp)) {
-                ipPacketReactiveProcessor(context, ethPkt, srcCp, srcIp, dstIp, ipProto);
-                // TODO: add ReactiveRouting for dstIp to srcIp with discovered egressCp as srcCp
+            if (!admit(srcCp, srcIp)) {
+                return;  // drop over rate limit without reactive handling
             }
+
+            // hand off to the worker of the dst prefix stripe; rest of handling is off the dispatch thread
+            dispatchPacket(new ReactivePacket(context, header, srcCp, ipProto), false);
         }
     }
 
-    /**
-     * handle Packet with dstIp=virtualGatewayIpAddresses.
-     * returns true(handled) or false(not for virtual gateway)
-     */
-    private boolean checkVirtualGatewayIpPacket(InboundPacket pkt, IpAddress srcIp, IpAddress dstIp) {
-        Ethernet ethPkt = pkt.parsed();  // assume valid
+    // hands off packet to the worker of the dst prefix stripe
+    private void dispatchPacket(ReactivePacket packet, boolean released) {
+        ThreadPoolExecutor[] currentWorkers = workers;
+        if (currentWorkers == null) {
+            return;  // deactivated
+        }
+        ThreadPoolExecutor worker = currentWorkers[Math.floorMod(stripeKey(packet.header).hashCode(),
+                                                                 currentWorkers.length)];
+        try {
+            worker.execute(() -> handlePacket(packet, released));
+        } catch (RejectedExecutionException e) {
+            if (workerDropCount.incrementAndGet() % 1000 == 1) {
+                log.warn("reactive worker queue full; drop: srcCp={} srcIp={} dstIp={}",
+                         packet.srcCp, packet.srcIp, packet.dstIp);
+            }
+        }
+    }
 
-        MacAddress mac = simpleFabric.findVMacForIp(dstIp);
-        if (mac == null || !simpleFabric.isVMac(ethPkt.getDestinationMAC())) {
-            /* Destination MAC should be any of virtual gateway macs */
-            return false;
-        } else if (dstIp.isIp4()) {
-            IPv4 ipv4Packet = (IPv4) ethPkt.getPayload();
-            if (ipv4Packet.getProtocol() == IPv4.PROTOCOL_ICMP) {
-                ICMP icmpPacket = (ICMP) ipv4Packet.getPayload();
+    // stripe key of dstIp; the local subnet or border route prefix, else dstIp itself
+    // NOTE: runs on the packet dispatch thread; looks up by raw address words of the header
+    private Object stripeKey(PacketHeader header) {
+        IpSubnet subnet = simpleFabric.findDstIpSubnet(header);
+        if (subnet != null) {
+            return subnet.ipPrefix();
+        }
+        Route route = simpleFabric.findDstBorderRoute(header);
+        if (route != null) {
+            return route.prefix();
+        }
+        return header.dstIp();
+    }
 
-                if (icmpPacket.getIcmpType() == ICMP.TYPE_ECHO_REQUEST) {
-                    log.info("IPV4 ICMP ECHO request to virtual gateway: "
-                              + "srcIp={} dstIp={} proto={}", srcIp, dstIp, ipv4Packet.getProtocol());
-                    TrafficTreatment treatment = DefaultTrafficTreatment.builder()
-                                .setOutput(pkt.receivedFrom().port()).build();
-                    OutboundPacket packet =
-                        new DefaultOutboundPacket(pkt.receivedFrom().deviceId(), treatment,
-                                ByteBuffer.wrap(icmpPacket.buildIcmpReply(pkt.parsed()).serialize()));
-                    packetService.emit(packet);
-                    return true;
+    /**
+     * Handles reactive packet on the stripe worker; holds the packet if next hop mac is unresolved.
+     * Released packets are handled with decision recomputed, and dropped if still unresolved.
+     */
+    private void handlePacket(ReactivePacket packet, boolean released) {
+        PacketContext context = packet.context;
+        PacketHeader header = packet.header;
+        ConnectPoint srcCp = packet.srcCp;
+        IpAddress srcIp = packet.srcIp;
+        IpAddress dstIp = packet.dstIp;
+        try {
+            ReactiveDecision decision;
+            if (released) {
+                // released on host event; recompute even if cached before the host event is handled here
+                decisionCache.invalidate(new DecisionKey(srcIp, dstIp, srcCp));
+            }
+            decision = getDecision(srcCp, srcIp, dstIp);
+            boolean isDstVMac = simpleFabric.isVMac(header.dstMac());
+            if (!checkVirtualGatewayIpPacket(context.inPacket(), header, decision, isDstVMac)) {
+                if (decision.nextHopHost == null && !released
+                        && (decision.type == DecisionType.ROUTE || decision.type == DecisionType.LOCAL_FORWARD)) {
+                    holdPacket(decision.nextHopIp, packet);
+                    return;
                 }
+                ipPacketReactiveProcessor(context, header, decision, isDstVMac, srcCp, srcIp, dstIp,
+                                          packet.ipProto);
+                // TODO: add ReactiveRouting for dstIp to srcIp with discovered egressCp as srcCp
             }
-            log.warn("IPV4 packet to virtual gateway dropped: "
-                     + "srcIp={} dstIp={} proto={}", srcIp, dstIp, ipv4Packet.getProtocol());
-            return true;
-
-        } else if (dstIp.isIp6()) {
-            // TODO: not tested yet (2017-07-20)
-            IPv6 ipv6Packet = (IPv6) ethPkt.getPayload();
-            if (ipv6Packet.getNextHeader() == IPv6.PROTOCOL_ICMP6) {
-                ICMP6 icmp6Packet = (ICMP6) ipv6Packet.getPayload();
+        } catch (Exception e) {
+            log.warn("reactive packet handling failed: srcCp={} srcIp={} dstIp={}", srcCp, srcIp, dstIp, e);
+        }
+    }
 
-                if (icmp6Packet.getIcmpType() == ICMP6.ECHO_REQUEST) {
-                    log.info("IPV6 ICMP6 ECHO request to virtual gateway: srcIp={} dstIp={} nextHeader={}",
-                             srcIp, dstIp, ipv6Packet.getNextHeader());
-                    TrafficTreatment treatment = DefaultTrafficTreatment.builder()
-                                .setOutput(pkt.receivedFrom().port()).build();
-                    OutboundPacket packet =
-                        new DefaultOutboundPacket(pkt.receivedFrom().deviceId(), treatment,
-                                ByteBuffer.wrap(icmp6Packet.buildIcmp6Reply(pkt.parsed()).serialize()));
-                    packetService.emit(packet);
-                    return true;
+    /**
+     * Holds packet on the queue of unresolved next hop; requests next hop mac on every hold or drop,
+     * for probes are paced by the neighbour table of SimpleFabricService. Packets held after the host
+     * is resolved, i.e. after the release on its host event, are released here at once.
+     */
+    private void holdPacket(IpAddress nextHopIp, ReactivePacket packet) {
+        HoldQueueTable.HoldResult result = holdQueues.hold(nextHopIp, packet, System.currentTimeMillis());
+        if (result == HoldQueueTable.HoldResult.HELD_FIRST) {
+            log.info("hold packet for next hop mac unknown: nextHopIp={} srcCp={} srcIp={} dstIp={}",
+                     nextHopIp, packet.srcCp, packet.srcIp, packet.dstIp);
+        }
+        hostService.startMonitoringIp(nextHopIp);
+        simpleFabric.requestMac(nextHopIp);
+
+        if (result != HoldQueueTable.HoldResult.DROPPED) {
+            // the host may be resolved between the decision and the hold
+            for (Host host : hostService.getHostsByIp(nextHopIp)) {
+                if (host.mac() != null) {
+                    releaseHeldPackets(host);
+                    break;
                 }
             }
-            log.warn("IPV6 packet to virtual gateway dropped: srcIp={} dstIp={} nextHeader={}",
-                     srcIp, dstIp, ipv6Packet.getNextHeader());
-            return true;
+        }
+    }
 
+    // releases held packets for the ips of resolved host
+    private void releaseHeldPackets(Host host) {
+        if (host.mac() == null) {
+            return;
+        }
+        List<ReactivePacket> packets = holdQueues.release(host.ipAddresses(), System.currentTimeMillis());
+        if (!packets.isEmpty()) {
+            log.info("release held packets: host={} ips={} packets={}", host.id(), host.ipAddresses(), packets.size());
+        }
+        for (ReactivePacket packet : packets) {
+            dispatchPacket(packet, true);
         }
-        return false;  // unknown traffic
+    }
+
+    // drops expired held packets and empty hold queues
+    private void expireHeldPackets() {
+        holdQueues.expire(System.currentTimeMillis());
     }
 
     /**
-     * Routes packet reactively.
+     * Gets the routing decision for (srcIp, dstIp, srcCp) from the decision cache;
+     * computes and caches it if not found or the fabric generation is changed.
+     * A decision computed while a host event arrives is not cached, for its next hop host lookup
+     * may be older than the invalidation of the host event.
      */
-    private void ipPacketReactiveProcessor(PacketContext context, Ethernet ethPkt, ConnectPoint srcCp,
-                                           IpAddress srcIp, IpAddress dstIp, byte ipProto) {
-        /* check reactive handling and forward packet */
-        log.trace("ip packet: srcCp={} srcIp={} dstIp={} ipProto={}",
-                  srcCp, srcIp, dstIp, ipProto);
+    private ReactiveDecision getDecision(ConnectPoint srcCp, IpAddress srcIp, IpAddress dstIp) {
+        DecisionKey key = new DecisionKey(srcIp, dstIp, srcCp);
+        long generation = simpleFabric.getGeneration();
+        ReactiveDecision decision = decisionCache.getIfPresent(key);
+        if (decision == null || decision.generation != generation) {
+            long hostEvents = hostEventCount.get();
+            decision = computeDecision(generation, srcCp, srcIp, dstIp);
+            if (hostEventCount.get() == hostEvents) {
+                decisionCache.put(key, decision);
+            }
+        }
+        return decision;
+    }
+
+    // invalidates decisions of the host ips as next hop; on host events
+    private void invalidateDecisions(Host host) {
+        hostEventCount.incrementAndGet();
+        Set<IpAddress> ips = host.ipAddresses();
+        if (ips.isEmpty()) {
+            return;
+        }
+        int before = (int) decisionCache.size();
+        decisionCache.asMap().values().removeIf(decision -> decision.nextHopIp != null
+                                                            && ips.contains(decision.nextHopIp));
+        decisionInvalidateCount.addAndGet(Math.max(before - decisionCache.size(), 0));
+    }
 
-        EncapsulationType encap = EncapsulationType.NONE;
+    /**
+     * Computes the routing decision with fabric and host lookups.
+     */
+    private ReactiveDecision computeDecision(long generation, ConnectPoint srcCp,
+                                             IpAddress srcIp, IpAddress dstIp) {
+        MacAddress dstGatewayMac = simpleFabric.findVMacForIp(dstIp);
 
         // prefix and nextHop for local Subnet
         IpPrefix srcPrefix = srcIp.toIpPrefix();
         IpPrefix dstPrefix = dstIp.toIpPrefix();
-        IpAddress srcNextHop = srcIp;
         IpAddress dstNextHop = dstIp;
-        MacAddress treatmentSrcMac = ethPkt.getDestinationMAC();
         int borderRoutePrefixLength = 0;
-        boolean updateMac = simpleFabric.isVMac(ethPkt.getDestinationMAC());
 
         // check subnet local or route
         IpSubnet srcSubnet = simpleFabric.findIpSubnet(srcIp);
         if (srcSubnet == null) {
             Route route = simpleFabric.findBorderRoute(srcIp);
             if (route == null) {
-                log.warn("unknown srcIp; drop: srcCp={} srcIp={} dstIp={} ipProto={}",
-                         srcCp, srcIp, dstIp, ipProto);
-                return;
+                return new ReactiveDecision(generation, DecisionType.UNKNOWN_SRC, dstGatewayMac);
             }
             srcPrefix = route.prefix();
-            srcNextHop = route.nextHop();
             borderRoutePrefixLength = route.prefix().prefixLength();
         }
         IpSubnet dstSubnet = simpleFabric.findIpSubnet(dstIp);
         if (dstSubnet == null) {
             Route route = simpleFabric.findBorderRoute(dstIp);
             if (route == null) {
-                log.warn("unknown dstIp; drop: srcCp={} srcIp={} dstIp={} ipProto={}",
-                         srcCp, srcIp, dstIp, ipProto);
-                return;
+                return new ReactiveDecision(generation, DecisionType.UNKNOWN_DST, dstGatewayMac);
             }
             dstPrefix = route.prefix();
             dstNextHop = route.nextHop();
             borderRoutePrefixLength = route.prefix().prefixLength();
         }
 
+        DecisionType type = DecisionType.ROUTE;
+        boolean useSrcMac = false;
+        EncapsulationType encap;
         if (dstSubnet != null) {
             // destination is local subnet ip
             if (SimpleFabricService.ALLOW_ETH_ADDRESS_SELECTOR && dstSubnet.equals(srcSubnet)) {
                 // NOTE: if ALLOW_ETH_ADDRESS_SELECTOR=false; l2Forward is always false
                 L2Network l2Network = simpleFabric.findL2Network(dstSubnet.l2NetworkName());
-                treatmentSrcMac = ethPkt.getSourceMAC();
+                useSrcMac = true;
                 if (l2Network != null && l2Network.l2Forward()) {
-                    // NOTE: no reactive route action but do forward packet for L2Forward do not handle packet
-                    // update mac only if dstMac is virtualGatewayMac, else assume valid mac already for the l2 network
-                    log.info("LOCAL FORWARD ONLY: "
-                             + "srcCp={} srcIp={} dstIp={} srcMac={} dstMac={} vlanId={} ipProto={} updateMac={}",
-                             context.inPacket().receivedFrom(),
-                             srcIp, dstIp, ethPkt.getSourceMAC(), ethPkt.getDestinationMAC(),
-                             ethPkt.getVlanID(), ipProto, updateMac);
-                    forwardPacketToDstIp(context, dstIp, treatmentSrcMac, updateMac);
-                    return;
+                    type = DecisionType.LOCAL_FORWARD;
                 }
             }
             encap = dstSubnet.encapsulation();
@@ -673,37 +875,184 @@ public class SimpleFabricReactiveRouting {
         } else {
             // destination is external network
             if (srcSubnet == null) {
-                // both are externel network
-                log.warn("INVALID PACKET: srcIp and dstIp are both NON-LOCAL: "
-                         + "srcCP={} srcIp={} dstIp={} srcMac={} dstMac={} vlanId={} ipProto={} updateMac={}",
-                         context.inPacket().receivedFrom(),
-                         srcIp, dstIp, ethPkt.getSourceMAC(), ethPkt.getDestinationMAC(),
-                         ethPkt.getVlanID(), ipProto, updateMac);
-                return;
+                return new ReactiveDecision(generation, DecisionType.EXTERNAL_TO_EXTERNAL, dstGatewayMac);
             }
             encap = srcSubnet.encapsulation();
         }
 
+        boolean srcCpValid = simpleFabric.findL2Network(srcCp, VlanId.NONE) != null ||
+                (simpleFabric.REACTIVE_ALLOW_LINK_CP && !linkService.getIngressLinks(srcCp).isEmpty());
+        Host nextHopHost = null;
+        for (Host host : hostService.getHostsByIp(dstNextHop)) {
+            if (host.mac() != null) {
+                nextHopHost = host;
+                break;
+            }
+        }
+        // routed packets are sent from the virtual gateway of the next hop subnet
+        IpSubnet nextHopSubnet = (dstSubnet != null) ? dstSubnet : simpleFabric.findIpSubnet(dstNextHop);
+        MacAddress nextHopGatewayMac = (nextHopSubnet != null) ? nextHopSubnet.gatewayMac() : null;
+        return new ReactiveDecision(generation, type, dstGatewayMac, srcPrefix, dstPrefix, dstNextHop,
+                                    nextHopHost, nextHopGatewayMac, encap, useSrcMac, srcCpValid,
+                                    dstSubnet != null, borderRoutePrefixLength);
+    }
+
+    /**
+     * handle Packet with dstIp=virtualGatewayIpAddresses.
+     * returns true(handled) or false(not for virtual gateway)
+     */
+    private boolean checkVirtualGatewayIpPacket(InboundPacket pkt, PacketHeader header,
+                                                ReactiveDecision decision, boolean isDstVMac) {
+        IpAddress srcIp = header.srcIp();
+        IpAddress dstIp = header.dstIp();
+
+        MacAddress mac = decision.dstGatewayMac;
+        if (mac == null || !isDstVMac) {
+            /* Destination MAC should be any of virtual gateway macs */
+            return false;
+        } else if (dstIp.isIp4()) {
+            if (header.ipProto() == IPv4.PROTOCOL_ICMP) {
+                Ethernet ethPkt = pkt.parsed();  // full decode only for icmp to gateway
+                IPv4 ipv4Packet = (IPv4) ethPkt.getPayload();
+                ICMP icmpPacket = (ICMP) ipv4Packet.getPayload();
+
+                if (icmpPacket.getIcmpType() == ICMP.TYPE_ECHO_REQUEST) {
+                    log.info("IPV4 ICMP ECHO request to virtual gateway: "
+                              + "srcIp={} dstIp={} proto={}", srcIp, dstIp, header.ipProto());
+                    TrafficTreatment treatment = DefaultTrafficTreatment.builder()
+                                .setOutput(pkt.receivedFrom().port()).build();
+                    OutboundPacket packet =
+                        new DefaultOutboundPacket(pkt.receivedFrom().deviceId(), treatment,
+                                ByteBuffer.wrap(icmpPacket.buildIcmpReply(ethPkt).serialize()));
+                    packetService.emit(packet);
+                    return true;
+                }
+            }
+            log.warn("IPV4 packet to virtual gateway dropped: "
+                     + "srcIp={} dstIp={} proto={}", srcIp, dstIp, header.ipProto());
+            return true;
+
+        } else if (dstIp.isIp6()) {
+            // TODO: not tested yet (2017-07-20)
+            if (header.ipProto() == IPv6.PROTOCOL_ICMP6) {
+                Ethernet ethPkt = pkt.parsed();  // full decode only for icmp6 to gateway
+                IPv6 ipv6Packet = (IPv6) ethPkt.getPayload();
+                ICMP6 icmp6Packet = (ICMP6) ipv6Packet.getPayload();
+
+                if (icmp6Packet.getIcmpType() == ICMP6.ECHO_REQUEST) {
+                    log.info("IPV6 ICMP6 ECHO request to virtual gateway: srcIp={} dstIp={} nextHeader={}",
+                             srcIp, dstIp, header.ipProto());
+                    TrafficTreatment treatment = DefaultTrafficTreatment.builder()
+                                .setOutput(pkt.receivedFrom().port()).build();
+                    OutboundPacket packet =
+                        new DefaultOutboundPacket(pkt.receivedFrom().deviceId(), treatment,
+                                ByteBuffer.wrap(icmp6Packet.buildIcmp6Reply(ethPkt).serialize()));
+                    packetService.emit(packet);
+                    return true;
+                }
+            }
+            log.warn("IPV6 packet to virtual gateway dropped: srcIp={} dstIp={} nextHeader={}",
+                     srcIp, dstIp, header.ipProto());
+            return true;
+
+        }
+        return false;  // unknown traffic
+    }
+
+    /**
+     * Checks packet-in admission on token buckets of the ingress port and the (ingress port, srcIp).
+     * returns true if admitted; the port bucket is consumed only if the source bucket admits
+     */
+    private boolean admit(ConnectPoint srcCp, IpAddress srcIp) {
+        long now = System.currentTimeMillis();
+        TokenBucket srcBucket;
+        TokenBucket portBucket;
+        try {
+            srcBucket = srcBuckets.get(new SourceKey(srcCp, srcIp),
+                    () -> new TokenBucket(simpleFabric.REACTIVE_SRC_RATE_PPS, simpleFabric.REACTIVE_SRC_BURST, now));
+            portBucket = portBuckets.get(srcCp,
+                    () -> new TokenBucket(simpleFabric.REACTIVE_PORT_RATE_PPS, simpleFabric.REACTIVE_PORT_BURST, now));
+        } catch (ExecutionException e) {
+            return true;  // never happens for bucket creation does not throw
+        }
+        if (!srcBucket.tryAcquire(now)) {
+            if (srcDropCount.incrementAndGet() % 1000 == 1) {
+                log.warn("packet-in over source rate limit; drop: srcCp={} srcIp={}", srcCp, srcIp);
+            }
+            return false;
+        }
+        if (!portBucket.tryAcquire(now)) {
+            if (portDropCount.incrementAndGet() % 1000 == 1) {
+                log.warn("packet-in over port rate limit; drop: srcCp={} srcIp={}", srcCp, srcIp);
+            }
+            return false;
+        }
+        admittedCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Routes packet reactively.
+     */
+    private void ipPacketReactiveProcessor(PacketContext context, PacketHeader header, ReactiveDecision decision,
+                                           boolean updateMac, ConnectPoint srcCp,
+                                           IpAddress srcIp, IpAddress dstIp, byte ipProto) {
+        /* check reactive handling and forward packet */
+        log.trace("ip packet: srcCp={} srcIp={} dstIp={} ipProto={}",
+                  srcCp, srcIp, dstIp, ipProto);
+
+        MacAddress treatmentSrcMac = decision.useSrcMac ? header.srcMac()
+                : (decision.nextHopGatewayMac != null) ? decision.nextHopGatewayMac : header.dstMac();
+
+        switch (decision.type) {
+        case UNKNOWN_SRC:
+            log.warn("unknown srcIp; drop: srcCp={} srcIp={} dstIp={} ipProto={}",
+                     srcCp, srcIp, dstIp, ipProto);
+            return;
+        case UNKNOWN_DST:
+            log.warn("unknown dstIp; drop: srcCp={} srcIp={} dstIp={} ipProto={}",
+                     srcCp, srcIp, dstIp, ipProto);
+            return;
+        case EXTERNAL_TO_EXTERNAL:
+            // both are externel network
+            log.warn("INVALID PACKET: srcIp and dstIp are both NON-LOCAL: "
+                     + "srcCP={} srcIp={} dstIp={} srcMac={} dstMac={} vlanId={} ipProto={} updateMac={}",
+                     context.inPacket().receivedFrom(),
+                     srcIp, dstIp, header.srcMac(), header.dstMac(),
+                     header.vlan(), ipProto, updateMac);
+            return;
+        case LOCAL_FORWARD:
+            // NOTE: no reactive route action but do forward packet for L2Forward do not handle packet
+            // update mac only if dstMac is virtualGatewayMac, else assume valid mac already for the l2 network
+            log.info("LOCAL FORWARD ONLY: "
+                     + "srcCp={} srcIp={} dstIp={} srcMac={} dstMac={} vlanId={} ipProto={} updateMac={}",
+                     context.inPacket().receivedFrom(),
+                     srcIp, dstIp, header.srcMac(), header.dstMac(),
+                     header.vlan(), ipProto, updateMac);
+            forwardPacketToDstIp(context, decision, treatmentSrcMac, updateMac);
+            return;
+        case ROUTE:
+        default:
+            break;
+        }
+
         log.info("REGI AND FORWARD: "
                  + "srcCP={} srcIp={} dstIp={} srcMac={} dstMac={} vlanId={} ipProto={} updateMac={}",
                  context.inPacket().receivedFrom(),
-                 srcIp, dstIp, ethPkt.getSourceMAC(), ethPkt.getDestinationMAC(),
-                 ethPkt.getVlanID(), ipProto, updateMac);
-        setUpConnectivity(srcCp, ipProto, srcPrefix, dstPrefix, dstNextHop, treatmentSrcMac, encap, updateMac,
-                          dstSubnet != null, borderRoutePrefixLength);
-        forwardPacketToDstIp(context, dstNextHop, treatmentSrcMac, updateMac);
+                 srcIp, dstIp, header.srcMac(), header.dstMac(),
+                 header.vlan(), ipProto, updateMac);
+        setUpConnectivity(srcCp, ipProto, decision, treatmentSrcMac, updateMac);
+        forwardPacketToDstIp(context, decision, treatmentSrcMac, updateMac);
     }
 
     /**
      * Emits the specified packet onto the network.
      */
-    private void forwardPacketToDstIp(PacketContext context, IpAddress nextHopIp,
+    private void forwardPacketToDstIp(PacketContext context, ReactiveDecision decision,
                                       MacAddress srcMac, boolean updateMac) {
-        Set<Host> hosts = hostService.getHostsByIp(nextHopIp);
-        Host dstHost;
-        if (!hosts.isEmpty()) {
-            dstHost = hosts.iterator().next();
-        } else {
+        IpAddress nextHopIp = decision.nextHopIp;
+        Host dstHost = decision.nextHopHost;
+        if (dstHost == null) {
             // NOTE: hostService.requestMac(nextHopIp); NOT IMPLEMENTED in ONOS HostManager.java; do it myself
             log.warn("forward packet nextHopIp host_mac unknown: nextHopIp={}", nextHopIp);
             hostService.startMonitoringIp(nextHopIp);
@@ -717,9 +1066,7 @@ public class SimpleFabricReactiveRouting {
         if (updateMac) {
             // NOTE: eth address update by treatment is NOT applied, so update mac myself
             outPacket = new DefaultOutboundPacket(dstHost.location().deviceId(), treatment,
-                                ByteBuffer.wrap(context.inPacket().parsed()
-                                          .setSourceMACAddress(srcMac)
-                                          .setDestinationMACAddress(dstHost.mac()).serialize()));
+                                ByteBuffer.wrap(rewriteMac(context.inPacket(), dstHost.mac(), srcMac)));
         } else {
             outPacket = new DefaultOutboundPacket(dstHost.location().deviceId(), treatment,
                                 context.inPacket().unparsed());
@@ -730,47 +1077,108 @@ public class SimpleFabricReactiveRouting {
         packetService.emit(outPacket);
     }
 
+    /**
+     * Copies the unparsed frame once and patches dst and src mac in place; the ethernet header
+     * starts with dst mac and src mac regardless of vlan tags, so no payload serialization is needed.
+     * The parsed packet is left unmodified for it is shared with other packet processors.
+     */
+    private byte[] rewriteMac(InboundPacket pkt, MacAddress dstMac, MacAddress srcMac) {
+        ByteBuffer unparsed = pkt.unparsed().duplicate();
+        if (unparsed.remaining() < 2 * MacAddress.MAC_ADDRESS_LENGTH) {
+            // malformed; fall back to serialization of a copy
+            Ethernet ethPkt = (Ethernet) pkt.parsed().duplicate();
+            return ethPkt.setSourceMACAddress(srcMac).setDestinationMACAddress(dstMac).serialize();
+        }
+        byte[] frame = new byte[unparsed.remaining()];
+        unparsed.get(frame);
+        System.arraycopy(dstMac.toBytes(), 0, frame, 0, MacAddress.MAC_ADDRESS_LENGTH);
+        System.arraycopy(srcMac.toBytes(), 0, frame, MacAddress.MAC_ADDRESS_LENGTH, MacAddress.MAC_ADDRESS_LENGTH);
+        return frame;
+    }
+
     /**
      * Update intents for connectivity.
      *
      * ToHost: dstPrefix = dstHostIp.toIpPrefix(), nextHopIp = destHostIp
      * ToInternet: dstPrefix = route.prefix(), nextHopIp = route.nextHopIp
-     * returns intent submited or not
+     * returns intent submit queued or not
      */
-    private boolean setUpConnectivity(ConnectPoint srcCp, byte ipProto, IpPrefix srcPrefix, IpPrefix dstPrefix,
-                                      IpAddress nextHopIp, MacAddress treatmentSrcMac,
-                                      EncapsulationType encap, boolean updateMac,
-                                      boolean isDstLocalSubnet, int borderRoutePrefixLength) {
-        if (!(simpleFabric.findL2Network(srcCp, VlanId.NONE) != null ||
-             (simpleFabric.REACTIVE_ALLOW_LINK_CP && !linkService.getIngressLinks(srcCp).isEmpty()))) {
+    private boolean setUpConnectivity(ConnectPoint srcCp, byte ipProto, ReactiveDecision decision,
+                                      MacAddress treatmentSrcMac, boolean updateMac) {
+        IpPrefix srcPrefix = decision.srcPrefix;
+        IpPrefix dstPrefix = decision.dstPrefix;
+        IpAddress nextHopIp = decision.nextHopIp;
+        if (!decision.srcCpValid) {
             log.warn("NO REGI for srcCp not in L2Network; srcCp={} srcPrefix={} dstPrefix={} nextHopIp={}",
                       srcCp, srcPrefix, dstPrefix, nextHopIp);
             return false;
         }
 
-        MacAddress nextHopMac = null;
-        ConnectPoint egressPoint = null;
-        for (Host host : hostService.getHostsByIp(nextHopIp)) {
-            if (host.mac() != null) {
-                nextHopMac = host.mac();
-                egressPoint = host.location();
-                break;
-            }
-        }
-        if (nextHopMac == null || egressPoint == null) {
+        if (decision.nextHopHost == null) {
             log.info("NO REGI for unknown nextHop Cp and Mac: srcPrefix={} dstPrefix={} nextHopIp={}",
                      srcPrefix, dstPrefix, nextHopIp);
             hostService.startMonitoringIp(nextHopIp);
             simpleFabric.requestMac(nextHopIp);
             return false;
         }
-        TrafficTreatment treatment;
-        if (updateMac && simpleFabric.ALLOW_ETH_ADDRESS_SELECTOR) {
-            treatment = generateSetMacTreatment(nextHopMac, treatmentSrcMac);
+
+        boolean direct = isDirectRoute(decision.encap);
+        Key key = buildRouteKey(srcCp, srcPrefix, dstPrefix, ipProto, direct);
+
+        // suppress duplicate setup while the setup of same key and srcCp is in flight
+        // to the same next hop host; a host move or mac change is set up at once
+        SetupKey setupKey = new SetupKey(key, srcCp);
+        ReactiveDecision setupDecision = pendingSetups.getIfPresent(setupKey);
+        if (setupDecision != null && setupDecision.generation == decision.generation
+                && decision.nextHopHost.equals(setupDecision.nextHopHost)) {
+            setupHitCount.incrementAndGet();
+            log.trace("setup in flight; forward only: key={} srcCp={}", key, srcCp);
+            return false;
+        }
+        setupMissCount.incrementAndGet();
+        pendingSetups.put(setupKey, decision);
+
+        MacAddress nextHopMac = decision.nextHopHost.mac();
+        ConnectPoint egressPoint = decision.nextHopHost.location();
+        TrafficTreatment treatment = buildRouteTreatment(nextHopMac, treatmentSrcMac, updateMac);
+
+        // priority for forwarding case
+        int priority = reactivePriority(true, decision.isDstLocalSubnet, decision.borderRoutePrefixLength);
+
+        log.info("queue mp2p intent: srcPrefix={} dstPrefix={} srcCp={} nextHopIp={} nextHopMac={} priority={}",
+                 srcPrefix, dstPrefix, srcCp, nextHopIp, nextHopMac, priority);
+        queueSubmit(key, direct, srcCp, buildRouteSelector(srcPrefix, dstPrefix, ipProto), treatment,
+                    egressPoint, priority, decision.encap);
+        return true;
+    }
+
+    // checks if the route is set up by direct flow rules; direct flow rules do not support encapsulation
+    // NOTE: depends on static config and the route only, for all nodes to set up a prefix in the same mode
+    private boolean isDirectRoute(EncapsulationType encap) {
+        return simpleFabric.REACTIVE_DIRECT_FLOW_RULES && encap == EncapsulationType.NONE;
+    }
+
+    // route key of intent or direct route
+    private Key buildRouteKey(ConnectPoint srcCp, IpPrefix srcPrefix, IpPrefix dstPrefix, byte ipProto,
+                              boolean direct) {
+        String keyProtoTag = "";
+        if (simpleFabric.REACTIVE_MATCH_IP_PROTO) {
+            keyProtoTag = "-p" + ipProto;
+        }
+        if (simpleFabric.REACTIVE_SINGLE_TO_SINGLE) {
+            // allocate intent per (srcPrefix, dstPrefix)
+            return Key.of(srcPrefix.toString() + "-to-" + dstPrefix.toString() + keyProtoTag, reactiveAppId);
+        } else if (direct) {
+            // allocate direct route per dstPrefix; a sink tree for all srcCps
+            return Key.of("direct-to-" +  dstPrefix.toString() + keyProtoTag, reactiveAppId);
         } else {
-            treatment = DefaultTrafficTreatment.builder().build();
+            // allocate intent per (srcDeviceId, dstPrefix)
+            return Key.of(srcCp.deviceId().toString() + "-to-" +  dstPrefix.toString() + keyProtoTag, reactiveAppId);
         }
+    }
 
+    // route selector of intent or direct route
+    private TrafficSelector buildRouteSelector(IpPrefix srcPrefix, IpPrefix dstPrefix, byte ipProto) {
         TrafficSelector.Builder selector = DefaultTrafficSelector.builder();
         if (dstPrefix.isIp4()) {
             selector.matchEthType(Ethernet.TYPE_IPV4);
@@ -795,61 +1203,465 @@ public class SimpleFabricReactiveRouting {
                 selector.matchIPProtocol(ipProto);
             }
         }
+        return selector.build();
+    }
 
-        Key key;
-        String keyProtoTag = "";
-        if (simpleFabric.REACTIVE_MATCH_IP_PROTO) {
-            keyProtoTag = "-p" + ipProto;
+    /**
+     * Provisions routes to the host on discovery; a host route if the host ip is in local ipSubnets
+     * and border routes if the host is of border route next hop. Every node handles the host events
+     * and provisions the route keys it owns, the same keys as the reactive ones.
+     * A route fans out to one key per edge device, or one direct route key, of the same prefix;
+     * up to REACTIVE_PROACTIVE_ROUTES_MAX keys per node, and the others are left to reactive setup.
+     * Routes once withdrawn and purged are provisioned again on the next host event or set up
+     * reactively on packets.
+     */
+    private void provisionHostRoutes(Host host) {
+        if (!simpleFabric.REACTIVE_PROACTIVE_HOST_ROUTES || host.mac() == null
+                || simpleFabric.REACTIVE_SINGLE_TO_SINGLE || simpleFabric.REACTIVE_MATCH_IP_PROTO) {
+            return;  // route keys depend on srcPrefix or ipProto of packet
         }
-        if (simpleFabric.REACTIVE_SINGLE_TO_SINGLE) {
-            // allocate intent per (srcPrefix, dstPrefix)
-            key = Key.of(srcPrefix.toString() + "-to-" + dstPrefix.toString() + keyProtoTag, reactiveAppId);
-        } else {
-            // allocate intent per (srcDeviceId, dstPrefix)
-            key = Key.of(srcCp.deviceId().toString() + "-to-" +  dstPrefix.toString() + keyProtoTag, reactiveAppId);
+        Map<IpAddress, Set<Route>> routesByNextHop = borderRoutesByNextHop;
+        for (IpAddress ip : host.ipAddresses()) {
+            if (ip.isIp6() && !simpleFabric.ALLOW_IPV6) {
+                continue;
+            }
+            IpSubnet subnet = simpleFabric.findIpSubnet(ip);
+            if (subnet == null) {
+                continue;
+            }
+            provisionRoute(ip.toIpPrefix(), host, subnet, true, 0);
+            for (Route route : routesByNextHop.getOrDefault(ip, ImmutableSet.of())) {
+                provisionRoute(route.prefix(), host, subnet, false, route.prefix().prefixLength());
+            }
+        }
+    }
+
+    // provisions routes to the hosts of the border route next hops changed; on fabric changes
+    private void provisionBorderRouteHosts() {
+        if (!simpleFabric.REACTIVE_PROACTIVE_HOST_ROUTES) {
+            return;
+        }
+        for (IpAddress nextHop : refreshBorderRouteIndex()) {
+            for (Host host : hostService.getHostsByIp(nextHop)) {
+                provisionHostRoutes(host);
+            }
+        }
+    }
+
+    // re-indexes border routes by next hop if fabric border routes are changed; on fabric event thread only
+    // returns next hop ips whose border routes are changed
+    private Set<IpAddress> refreshBorderRouteIndex() {
+        Set<Route> routes = simpleFabric.getBorderRoutes();
+        if (routes == indexedBorderRoutes) {
+            return ImmutableSet.of();  // fabric states share unchanged border routes
+        }
+        Map<IpAddress, Set<Route>> newRoutesByNextHop = new HashMap<>();
+        for (Route route : routes) {
+            newRoutesByNextHop.computeIfAbsent(route.nextHop(), ip -> new HashSet<>()).add(route);
+        }
+        Map<IpAddress, Set<Route>> prevRoutesByNextHop = borderRoutesByNextHop;
+        Set<IpAddress> changedNextHops = new HashSet<>();
+        for (Map.Entry<IpAddress, Set<Route>> entry : newRoutesByNextHop.entrySet()) {
+            if (!entry.getValue().equals(prevRoutesByNextHop.get(entry.getKey()))) {
+                changedNextHops.add(entry.getKey());
+            }
+        }
+        // NOTE: routes to next hops of removed border routes are kept as reactive routes are
+        indexedBorderRoutes = routes;
+        borderRoutesByNextHop = ImmutableMap.copyOf(newRoutesByNextHop);
+        return changedNextHops;
+    }
+
+    // queues route to dstPrefix via nextHopHost from all l2Network edge points
+    private void provisionRoute(IpPrefix dstPrefix, Host nextHopHost, IpSubnet nextHopSubnet,
+                                boolean isDstLocalSubnet, int borderRoutePrefixLength) {
+        // as the reactive route of a routed packet; dst mac is the virtual gateway mac of the packet
+        TrafficTreatment treatment = buildRouteTreatment(nextHopHost.mac(), nextHopSubnet.gatewayMac(), true);
+        EncapsulationType encap = nextHopSubnet.encapsulation();
+        boolean direct = isDirectRoute(encap);
+        TrafficSelector selector = buildRouteSelector(null, dstPrefix, (byte) 0);
+        int priority = reactivePriority(true, isDstLocalSubnet, borderRoutePrefixLength);
+        log.info("provision route: dstPrefix={} nextHopIp={} nextHopCp={} priority={}",
+                 dstPrefix, nextHopHost.ipAddresses(), nextHopHost.location(), priority);
+        for (L2Network l2Network : simpleFabric.getL2Networks()) {
+            if (isDstLocalSubnet && l2Network.name().equals(nextHopSubnet.l2NetworkName())) {
+                continue;  // same subnet sources reach the host without routing; left to reactive setup
+            }
+            for (Interface iface : l2Network.interfaces()) {
+                ConnectPoint srcCp = iface.connectPoint();
+                if (srcCp.equals(nextHopHost.location())) {
+                    continue;
+                }
+                Key key = buildRouteKey(srcCp, null, dstPrefix, (byte) 0, direct);
+                if (!isMine(key) || !admitProactiveRoute(key)) {
+                    continue;  // provisioned by the owner node, or left to reactive setup
+                }
+                queueSubmit(key, direct, srcCp, selector, treatment, nextHopHost.location(), priority, encap);
+            }
+        }
+    }
+
+    // admits the proactive route key up to REACTIVE_PROACTIVE_ROUTES_MAX; keys are released on purge
+    private boolean admitProactiveRoute(Key key) {
+        if (proactiveRouteKeys.contains(key)) {
+            return true;
+        }
+        if (proactiveRouteKeys.size() >= simpleFabric.REACTIVE_PROACTIVE_ROUTES_MAX) {
+            if (proactiveSkipCount.incrementAndGet() % 1000 == 1) {
+                log.warn("proactive route keys full; left to reactive setup: key={}", key);
+            }
+            return false;
         }
+        proactiveRouteKeys.add(key);
+        return true;
+    }
+
+    // route treatment to next hop; shared by reactive and proactive routes for not to override each other
+    private TrafficTreatment buildRouteTreatment(MacAddress nextHopMac, MacAddress srcMac, boolean updateMac) {
+        if (updateMac && simpleFabric.ALLOW_ETH_ADDRESS_SELECTOR) {
+            return generateSetMacTreatment(nextHopMac, srcMac);
+        }
+        return DefaultTrafficTreatment.builder().build();
+    }
+
+    /**
+     * Queues a route submit request on the owner node of the route key; sent to the owner node
+     * if owned by other node, for each key is merged, submitted and maintained by one node only.
+     */
+    private void queueSubmit(Key key, boolean direct, ConnectPoint srcCp, TrafficSelector selector,
+                             TrafficTreatment treatment, ConnectPoint egressPoint, int priority,
+                             EncapsulationType encap) {
+        if (isMine(key)) {
+            queueLocalSubmit(key, direct, srcCp, selector, treatment, egressPoint, priority, encap);
+            return;
+        }
+        NodeId owner = workPartitionService.getLeader(key, Key::hash);
+        if (owner == null) {
+            log.warn("route submit dropped for no owner node: key={}", key);
+            clearPendingSetups(key);
+            return;
+        }
+        synchronized (pendingSubmits) {
+            submitForwardCount++;
+        }
+        SubmitRequest request = new SubmitRequest(key.toString(), direct, srcCp, selector, treatment,
+                                                  egressPoint, priority, encap.name());
+        clusterCommunicator.unicast(request, SUBMIT_SUBJECT, SERIALIZER::encode, owner)
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        log.warn("route submit not sent to owner node {}: key={} error={}", owner, key, error);
+                        clearPendingSetups(key);
+                        synchronized (pendingSubmits) {
+                            submitFailedCount++;
+                        }
+                    }
+                });
+    }
+
+    // handles route submit request from other nodes; queued here even if the owner is changed
+    // in flight, for updateDirectRoute() and intent partitioning handle it as a local request
+    private void handleSubmitRequest(SubmitRequest request) {
+        queueLocalSubmit(Key.of(request.key, reactiveAppId), request.direct, request.srcCp,
+                         request.selector, request.treatment, request.egressPoint, request.priority,
+                         EncapsulationType.valueOf(request.encap));
+    }
+
+    // clears in-flight setups of the key for the next packet to set up again
+    private void clearPendingSetups(Key key) {
+        pendingSetups.asMap().keySet().removeIf(setupKey -> setupKey.key.equals(key));
+    }
 
+    /**
+     * Queues an intent submit request to be merged per key within the submit window.
+     * Later requests on the same key add ingress points and override the other intent fields.
+     */
+    private void queueLocalSubmit(Key key, boolean direct, ConnectPoint srcCp, TrafficSelector selector,
+                                  TrafficTreatment treatment, ConnectPoint egressPoint, int priority,
+                                  EncapsulationType encap) {
+        List<Constraint> constraints = buildConstraints(reactiveConstraints, encap);
+        synchronized (pendingSubmits) {
+            submitRequestCount++;
+            PendingSubmit pending = pendingSubmits.get(key);
+            if (pending != null) {
+                pending.update(srcCp, selector, treatment, egressPoint, priority, constraints);
+                submitMergedCount++;
+                return;
+            }
+            pendingSubmits.put(key, new PendingSubmit(direct, srcCp, selector, treatment, egressPoint,
+                                                      priority, constraints));
+            if (pendingSubmits.size() == 1) {
+                scheduleSubmitFlush();
+            }
+        }
+    }
+
+    // schedules flush of pending submits; guarded by pendingSubmits
+    private void scheduleSubmitFlush() {
+        ScheduledExecutorService executor = submitExecutor;
+        if (executor == null) {
+            pendingSubmits.clear();  // not active
+            return;
+        }
+        try {
+            executor.schedule(this::flushSubmits, simpleFabric.REACTIVE_SUBMIT_WINDOW_MSEC, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.debug("simple fabric reactive routing submit flush not scheduled on shutdown");
+            pendingSubmits.clear();
+        }
+    }
+
+    /**
+     * Submits merged intents of the submit window; merges with existing intent ingress points
+     * and skips the intents with no change. A failed key does not stop the others of the batch
+     * and its in-flight setups are cleared for the next packet to retry.
+     */
+    private void flushSubmits() {
+        Map<Key, PendingSubmit> batch;
+        synchronized (pendingSubmits) {
+            batch = ImmutableMap.copyOf(pendingSubmits);
+            pendingSubmits.clear();
+            submitBatchCount++;
+        }
+        int submitted = 0;
+        int failed = 0;
+        FlowRuleOperations.Builder directOps = FlowRuleOperations.builder();
+        for (Map.Entry<Key, PendingSubmit> entry : batch.entrySet()) {
+            Key key = entry.getKey();
+            PendingSubmit pending = entry.getValue();
+            try {
+                boolean changed = pending.direct ? updateDirectRoute(key, pending, directOps)
+                                                 : submitIntent(key, pending);
+                if (changed) {
+                    submitted++;
+                }
+            } catch (RuntimeException e) {
+                log.warn("submit failed; retried on next packet: key={}", key, e);
+                clearPendingSetups(key);
+                failed++;
+            }
+        }
+        applyFlowRuleOps(directOps);
+        synchronized (pendingSubmits) {
+            submitIntentCount += submitted;
+            submitUnchangedCount += batch.size() - submitted - failed;
+            submitFailedCount += failed;
+        }
+    }
+
+    /**
+     * Merges the pending submit with the existing intent ingress points and submits the intent.
+     * returns true if the intent is submitted, false if no change
+     */
+    private boolean submitIntent(Key key, PendingSubmit pending) {
         // check and merge already existing ingress points
-        Set<ConnectPoint> ingressPoints = new HashSet<>();
-        MultiPointToSinglePointIntent existingIntent = (MultiPointToSinglePointIntent) intentService.getIntent(key);
-        if (existingIntent != null) {
-            ingressPoints.addAll(existingIntent.ingressPoints());
-            if (!ingressPoints.add(srcCp)  // alread exists and dst not changed
-                    && egressPoint.equals(existingIntent.egressPoint())
-                    && treatment.equals(existingIntent.treatment())) {
-                log.warn("srcCP is already in mp2p intent: srcPrefix={} dstPrefix={} srcCp={}",
-                         srcPrefix, dstPrefix, srcCp);
+        Set<ConnectPoint> ingressPoints = new HashSet<>(pending.ingressPoints);
+        Intent intent = intentService.getIntent(key);
+        if (intent != null && !(intent instanceof MultiPointToSinglePointIntent)) {
+            log.warn("replace non mp2p intent of reactive route key: key={} intent={}", key, intent);
+        }
+        if (intent instanceof MultiPointToSinglePointIntent) {
+            MultiPointToSinglePointIntent existingIntent = (MultiPointToSinglePointIntent) intent;
+            if (existingIntent.ingressPoints().containsAll(ingressPoints)  // alread exists and dst not changed
+                    && pending.egressPoint.equals(existingIntent.egressPoint())
+                    && pending.treatment.equals(existingIntent.treatment())) {
+                log.debug("srcCPs are already in mp2p intent: key={} srcCps={}", key, ingressPoints);
                 return false;
             }
-            log.info("update mp2p intent: srcPrefix={} dstPrefix={} srcCp={}",
-                     srcPrefix, dstPrefix, srcCp);
+            ingressPoints.addAll(existingIntent.ingressPoints());
+            log.info("update mp2p intent: key={} srcCps={}", key, pending.ingressPoints);
         } else {
-            log.info("create mp2p intent: srcPrefix={} dstPrefix={} srcCp={}",
-                     srcPrefix, dstPrefix, srcCp);
-            ingressPoints.add(srcCp);
+            log.info("create mp2p intent: key={} srcCps={}", key, pending.ingressPoints);
         }
 
-        // priority for forwarding case
-        int priority = reactivePriority(true, isDstLocalSubnet, borderRoutePrefixLength);
-
         MultiPointToSinglePointIntent newIntent = MultiPointToSinglePointIntent.builder()
             .key(key)
             .appId(reactiveAppId)
-            .selector(selector.build())
-            .treatment(treatment)
+            .selector(pending.selector)
+            .treatment(pending.treatment)
             .ingressPoints(ingressPoints)
-            .egressPoint(egressPoint)
-            .priority(priority)
-            .constraints(buildConstraints(reactiveConstraints, encap))
+            .egressPoint(pending.egressPoint)
+            .priority(pending.priority)
+            .constraints(pending.constraints)
             .build();
-        log.info("submmit mp2p intent: srcPrefix={} dstPrefix={} srcCp={} "
-                 + "newIntent={} nextHopIp={} nextHopMac={} priority={}",
-                 srcPrefix, dstPrefix, ingressPoints, newIntent, nextHopIp, nextHopMac, priority);
+        log.info("submmit mp2p intent: key={} srcCps={} newIntent={} priority={}",
+                 key, ingressPoints, newIntent, pending.priority);
         toBePurgedIntentKeys.remove(newIntent.key());
         intentService.submit(newIntent);
         return true;
     }
 
+    /**
+     * Merges the pending submit into the direct route of the key and adds changed flow rules to ops.
+     * returns true if the route is changed
+     */
+    private boolean updateDirectRoute(Key key, PendingSubmit pending, FlowRuleOperations.Builder ops) {
+        if (!isMine(key)) {
+            log.info("direct route not installed for key owner changed: key={}", key);
+            return false;
+        }
+        synchronized (directRoutes) {
+            DirectRoute prevRoute = directRoutes.get(key);
+            Set<ConnectPoint> ingressPoints = new HashSet<>(pending.ingressPoints);
+            if (prevRoute != null) {
+                if (prevRoute.ingressPoints.containsAll(ingressPoints)  // alread exists and dst not changed
+                        && pending.egressPoint.equals(prevRoute.egressPoint)
+                        && pending.treatment.equals(prevRoute.treatment)) {
+                    log.debug("srcCPs are already in direct route: key={} srcCps={}", key, ingressPoints);
+                    return false;
+                }
+                ingressPoints.addAll(prevRoute.ingressPoints);
+            }
+            DirectRoute route = new DirectRoute(pending.selector, pending.treatment, ingressPoints,
+                                                pending.egressPoint, pending.priority);
+            buildDirectRules(route);
+            log.info("install direct route: key={} srcCps={} egressCp={} inPorts={}",
+                     key, ingressPoints, route.egressPoint, route.rules.keySet());
+            diffDirectRules(prevRoute, route, ops);
+            directRoutes.put(key, route);
+            return true;
+        }
+    }
+
+    /**
+     * Builds flow rules of the route on the sink tree toward the egress point from shortest paths of
+     * ingress devices; a path stops where it joins the tree. Each rule matches its in port as well,
+     * the ingress points or the tree links, for the route not to capture traffic from other ports
+     * such as same subnet l2 traffic on the egress device.
+     */
+    private void buildDirectRules(DirectRoute route) {
+        Map<DeviceId, PortNumber> outPorts = new HashMap<>();
+        Set<ConnectPoint> inPoints = new HashSet<>();
+        DeviceId egressDeviceId = route.egressPoint.deviceId();
+        outPorts.put(egressDeviceId, route.egressPoint.port());
+        Topology topology = topologyService.currentTopology();
+        for (ConnectPoint cp : route.ingressPoints) {
+            if (cp.equals(route.egressPoint)) {
+                continue;
+            }
+            if (outPorts.containsKey(cp.deviceId())) {
+                inPoints.add(cp);  // already on sink tree
+                continue;
+            }
+            Set<Path> paths = topologyService.getPaths(topology, cp.deviceId(), egressDeviceId);
+            if (paths.isEmpty()) {
+                log.warn("direct route no path: srcCp={} egressCp={}", cp, route.egressPoint);
+                continue;
+            }
+            inPoints.add(cp);
+            for (Link link : paths.iterator().next().links()) {
+                if (outPorts.containsKey(link.src().deviceId())) {
+                    break;  // joins sink tree
+                }
+                outPorts.put(link.src().deviceId(), link.src().port());
+                inPoints.add(link.dst());
+            }
+        }
+        route.rules.clear();
+        for (ConnectPoint inPoint : inPoints) {
+            DeviceId deviceId = inPoint.deviceId();
+            TrafficTreatment.Builder treatment = deviceId.equals(egressDeviceId)
+                    ? DefaultTrafficTreatment.builder(route.treatment)  // mac update on egress device
+                    : DefaultTrafficTreatment.builder();
+            route.rules.put(inPoint, DefaultFlowRule.builder()
+                    .forDevice(deviceId)
+                    .withPriority(route.priority)
+                    .withSelector(DefaultTrafficSelector.builder(route.selector)
+                                          .matchInPort(inPoint.port()).build())
+                    .withTreatment(treatment.setOutput(outPorts.get(deviceId)).build())
+                    .fromApp(reactiveAppId)
+                    .makePermanent()
+                    .forTable(0).build());
+        }
+    }
+
+    // adds flow rule operations from prevRoute (may be null) to route (may be null)
+    private void diffDirectRules(DirectRoute prevRoute, DirectRoute route, FlowRuleOperations.Builder ops) {
+        Map<ConnectPoint, FlowRule> prevRules = (prevRoute != null) ? prevRoute.rules : ImmutableMap.of();
+        Map<ConnectPoint, FlowRule> rules = (route != null) ? route.rules : ImmutableMap.of();
+        for (Map.Entry<ConnectPoint, FlowRule> entry : prevRules.entrySet()) {
+            FlowRule rule = rules.get(entry.getKey());
+            if (rule == null || !rule.equals(entry.getValue())) {
+                ops.remove(entry.getValue());
+            }
+        }
+        for (Map.Entry<ConnectPoint, FlowRule> entry : rules.entrySet()) {
+            FlowRule prevRule = prevRules.get(entry.getKey());
+            // NOTE: FlowRule.equals() does not compare treatment
+            if (prevRule == null || !prevRule.equals(entry.getValue())
+                    || !prevRule.treatment().equals(entry.getValue().treatment())) {
+                ops.add(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Repairs direct routes on network changes; removes unavailable ingress points and routes,
+     * and rebuilds sink trees on current topology. Routes of the keys no more owned by this node
+     * are removed to be set up again by the new owner on next packets.
+     */
+    private void refreshDirectRoutes() {
+        FlowRuleOperations.Builder ops = FlowRuleOperations.builder();
+        synchronized (directRoutes) {
+            if (directRoutes.isEmpty()) {
+                return;
+            }
+            for (Key key : ImmutableSet.copyOf(directRoutes.keySet())) {
+                DirectRoute prevRoute = directRoutes.get(key);
+                if (!isMine(key)) {
+                    log.info("refresh direct route; remove route for key owner changed: key={}", key);
+                    diffDirectRules(prevRoute, null, ops);
+                    directRoutes.remove(key);
+                    proactiveRouteKeys.remove(key);
+                    continue;
+                }
+                Set<ConnectPoint> ingressPoints = new HashSet<>();
+                if (deviceService.isAvailable(prevRoute.egressPoint.deviceId())
+                        && simpleFabric.findL2Network(prevRoute.egressPoint, VlanId.NONE) != null) {
+                    for (ConnectPoint cp : prevRoute.ingressPoints) {
+                        if (deviceService.isAvailable(cp.deviceId())
+                                && simpleFabric.findL2Network(cp, VlanId.NONE) != null) {
+                            ingressPoints.add(cp);
+                        }
+                    }
+                }
+                if (ingressPoints.isEmpty()) {
+                    log.info("refresh direct route; remove route for no ingress nor egress point available: key={}",
+                             key);
+                    diffDirectRules(prevRoute, null, ops);
+                    directRoutes.remove(key);
+                    proactiveRouteKeys.remove(key);
+                    continue;
+                }
+                DirectRoute route = new DirectRoute(prevRoute.selector, prevRoute.treatment, ingressPoints,
+                                                    prevRoute.egressPoint, prevRoute.priority);
+                buildDirectRules(route);
+                diffDirectRules(prevRoute, route, ops);
+                directRoutes.put(key, route);
+            }
+        }
+        applyFlowRuleOps(ops);
+    }
+
+    // removes all direct routes and their flow rules
+    private void withdrawAllDirectRoutes() {
+        FlowRuleOperations.Builder ops = FlowRuleOperations.builder();
+        synchronized (directRoutes) {
+            for (DirectRoute route : directRoutes.values()) {
+                diffDirectRules(route, null, ops);
+            }
+            directRoutes.clear();
+        }
+        applyFlowRuleOps(ops);
+    }
+
+    // applies flow rule operations if any; skips the flow rule service call on no change
+    private void applyFlowRuleOps(FlowRuleOperations.Builder ops) {
+        FlowRuleOperations flowRuleOps = ops.build();
+        if (!flowRuleOps.stages().isEmpty()) {
+            flowRuleService.apply(flowRuleOps);
+        }
+    }
+
     // generate treatment to target
     private TrafficTreatment generateSetMacTreatment(MacAddress dstMac, MacAddress srcMac) {
         return DefaultTrafficTreatment.builder()
@@ -859,14 +1671,24 @@ public class SimpleFabricReactiveRouting {
                    .build();
     }
 
-    // monitor border peers for routeService lookup to be effective
+    // monitor border peers for routeService lookup to be effective; each next hop by its owner node only
+    // NOTE: IpAddress.hashCode() includes the hash of its version enum which differs per JVM;
+    //       partitioned by the string hash to agree on the owner across nodes
     private void monitorBorderPeers() {
         for (Route route : simpleFabric.getBorderRoutes()) {
+            if (!workPartitionService.isMine(route.nextHop(), ip -> (long) ip.toString().hashCode())) {
+                continue;
+            }
             hostService.startMonitoringIp(route.nextHop());
             simpleFabric.requestMac(route.nextHop());
         }
     }
 
+    // Checks if the intent key is in work partitions of this node; same partitioning as intentService.isLocal()
+    private boolean isMine(Key key) {
+        return workPartitionService.isMine(key, Key::hash);
+    }
+
     // priority calculator
     private int reactivePriority(boolean isForward, boolean isDstLocalSubnet, int borderRoutePrefixLength) {
         if (isDstLocalSubnet) {  // -> dst:localSubnet
@@ -915,6 +1737,21 @@ public class SimpleFabricReactiveRouting {
             }
             out.println("");
 
+            synchronized (directRoutes) {
+                if (!directRoutes.isEmpty()) {
+                    out.println("Reactive Routing Direct Routes:\n");
+                    for (Map.Entry<Key, DirectRoute> entry : directRoutes.entrySet()) {
+                        DirectRoute route = entry.getValue();
+                        out.println("    " + entry.getKey().toString()
+                                    + " to " + route.egressPoint.toString()
+                                    + " set " + route.treatment.immediate().toString()
+                                    + " from " + route.ingressPoints.toString()
+                                    + " inPorts " + route.rules.keySet().toString());
+                    }
+                    out.println("");
+                }
+            }
+
             out.println("Reactive Routing Intercept Flow Rules:\n");
             List<FlowRule> rules = new ArrayList(interceptFlowRules);
             Collections.sort(rules, new Comparator<FlowRule>() {
@@ -935,6 +1772,66 @@ public class SimpleFabricReactiveRouting {
                 out.println("    " + key.toString());
             }
             out.println("");
+            synchronized (pendingSubmits) {
+                out.println("Reactive Routing Intent Submits:\n");
+                out.println("    pending=" + pendingSubmits.size()
+                            + " requests=" + submitRequestCount
+                            + " merged=" + submitMergedCount
+                            + " batches=" + submitBatchCount
+                            + " submitted=" + submitIntentCount
+                            + " unchanged=" + submitUnchangedCount
+                            + " failed=" + submitFailedCount
+                            + " forwarded=" + submitForwardCount);
+                out.println("");
+            }
+            if (simpleFabric.REACTIVE_PROACTIVE_HOST_ROUTES) {
+                out.println("Reactive Routing Proactive Routes:\n");
+                out.println("    keys=" + proactiveRouteKeys.size()
+                            + " max=" + simpleFabric.REACTIVE_PROACTIVE_ROUTES_MAX
+                            + " skipped=" + proactiveSkipCount.get());
+                out.println("");
+            }
+            out.println("Reactive Routing In-Flight Setups:\n");
+            out.println("    size=" + pendingSetups.size()
+                        + " hits=" + setupHitCount.get()
+                        + " misses=" + setupMissCount.get());
+            out.println("");
+            CacheStats cacheStats = decisionCache.stats();
+            out.println("Reactive Routing Decision Cache:\n");
+            out.println("    size=" + decisionCache.size()
+                        + " hits=" + cacheStats.hitCount()
+                        + " misses=" + cacheStats.missCount()
+                        + " evictions=" + cacheStats.evictionCount()
+                        + " hostInvalidations=" + decisionInvalidateCount.get());
+            out.println("");
+
+        } else if (subject == "stats") {
+            ThreadPoolExecutor[] currentWorkers = workers;
+            if (currentWorkers != null) {
+                out.println("Reactive Routing Workers:");
+                for (int i = 0; i < currentWorkers.length; i++) {
+                    out.println("    stripe=" + i
+                                + " queued=" + currentWorkers[i].getQueue().size()
+                                + " completed=" + currentWorkers[i].getCompletedTaskCount());
+                }
+                out.println("    dropped=" + workerDropCount.get()
+                            + " REACTIVE_WORKER_QUEUE_SIZE=" + simpleFabric.REACTIVE_WORKER_QUEUE_SIZE);
+                out.println("");
+            }
+            out.println("Reactive Routing Hold Queues:");
+            out.println("    " + holdQueues);
+            out.println("");
+            out.println("Reactive Routing Admission:");
+            out.println("    admitted=" + admittedCount.get()
+                        + " portDropped=" + portDropCount.get()
+                        + " srcDropped=" + srcDropCount.get()
+                        + " ports=" + portBuckets.size()
+                        + " sources=" + srcBuckets.size());
+            out.println("    REACTIVE_PORT_RATE_PPS=" + simpleFabric.REACTIVE_PORT_RATE_PPS
+                        + " REACTIVE_PORT_BURST=" + simpleFabric.REACTIVE_PORT_BURST
+                        + " REACTIVE_SRC_RATE_PPS=" + simpleFabric.REACTIVE_SRC_RATE_PPS
+                        + " REACTIVE_SRC_BURST=" + simpleFabric.REACTIVE_SRC_BURST);
+            out.println("");
 
         } else if (subject == "reactive-intents") {
             for (Intent entry : intentService.getIntents()) {
@@ -949,25 +1846,303 @@ public class SimpleFabricReactiveRouting {
         }
     }
 
+    // Decision types of reactive routing
+    private enum DecisionType {
+        UNKNOWN_SRC,           // drop for no subnet nor border route of srcIp
+        UNKNOWN_DST,           // drop for no subnet nor border route of dstIp
+        EXTERNAL_TO_EXTERNAL,  // drop for both srcIp and dstIp are non-local
+        LOCAL_FORWARD,         // forward packet only within l2Forward network
+        ROUTE                  // set up connectivity and forward packet
+    }
+
+    // Decision cache key
+    private static final class DecisionKey {
+        private final IpAddress srcIp;
+        private final IpAddress dstIp;
+        private final ConnectPoint srcCp;
+
+        private DecisionKey(IpAddress srcIp, IpAddress dstIp, ConnectPoint srcCp) {
+            this.srcIp = srcIp;
+            this.dstIp = dstIp;
+            this.srcCp = srcCp;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(srcIp, dstIp, srcCp);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof DecisionKey)) {
+                return false;
+            }
+            DecisionKey that = (DecisionKey) obj;
+            return Objects.equals(srcIp, that.srcIp)
+                   && Objects.equals(dstIp, that.dstIp)
+                   && Objects.equals(srcCp, that.srcCp);
+        }
+    }
+
+    // Punted packet to be handled on worker; may be held on unresolved next hop
+    private static final class ReactivePacket {
+        private final PacketContext context;
+        private final PacketHeader header;
+        private final ConnectPoint srcCp;
+        private final IpAddress srcIp;
+        private final IpAddress dstIp;
+        private final byte ipProto;
+        private final int size;
+
+        private ReactivePacket(PacketContext context, PacketHeader header, ConnectPoint srcCp, byte ipProto) {
+            this.context = context;
+            this.header = header;
+            this.srcCp = srcCp;
+            this.srcIp = header.srcIp();
+            this.dstIp = header.dstIp();
+            this.ipProto = ipProto;
+            this.size = context.inPacket().unparsed().remaining();
+        }
+    }
+
+    // Admission source key
+    private static final class SourceKey {
+        private final ConnectPoint srcCp;
+        private final IpAddress srcIp;
+
+        private SourceKey(ConnectPoint srcCp, IpAddress srcIp) {
+            this.srcCp = srcCp;
+            this.srcIp = srcIp;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(srcCp, srcIp);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof SourceKey)) {
+                return false;
+            }
+            SourceKey that = (SourceKey) obj;
+            return Objects.equals(srcCp, that.srcCp) && Objects.equals(srcIp, that.srcIp);
+        }
+    }
+
+    // In-flight setup key
+    private static final class SetupKey {
+        private final Key key;
+        private final ConnectPoint srcCp;
+
+        private SetupKey(Key key, ConnectPoint srcCp) {
+            this.key = key;
+            this.srcCp = srcCp;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(key, srcCp);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof SetupKey)) {
+                return false;
+            }
+            SetupKey that = (SetupKey) obj;
+            return Objects.equals(key, that.key) && Objects.equals(srcCp, that.srcCp);
+        }
+    }
+
+    // Routing decision of (srcIp, dstIp, srcCp); packet mac dependent parts are evaluated per packet
+    private static final class ReactiveDecision {
+        private final long generation;
+        private final DecisionType type;
+        private final MacAddress dstGatewayMac;  // virtual gateway mac if dstIp is gateway ip
+        private final IpPrefix srcPrefix;
+        private final IpPrefix dstPrefix;
+        private final IpAddress nextHopIp;
+        private final Host nextHopHost;          // null if next hop mac is unknown
+        private final MacAddress nextHopGatewayMac;  // virtual gateway mac of next hop subnet; may be null
+        private final EncapsulationType encap;
+        private final boolean useSrcMac;         // treatment src mac from packet src mac
+        private final boolean srcCpValid;
+        private final boolean isDstLocalSubnet;
+        private final int borderRoutePrefixLength;
+
+        // decision to drop
+        private ReactiveDecision(long generation, DecisionType type, MacAddress dstGatewayMac) {
+            this(generation, type, dstGatewayMac, null, null, null, null, null,
+                 EncapsulationType.NONE, false, false, false, 0);
+        }
+
+        private ReactiveDecision(long generation, DecisionType type, MacAddress dstGatewayMac,
+                                 IpPrefix srcPrefix, IpPrefix dstPrefix, IpAddress nextHopIp,
+                                 Host nextHopHost, MacAddress nextHopGatewayMac, EncapsulationType encap,
+                                 boolean useSrcMac, boolean srcCpValid, boolean isDstLocalSubnet,
+                                 int borderRoutePrefixLength) {
+            this.generation = generation;
+            this.type = type;
+            this.dstGatewayMac = dstGatewayMac;
+            this.srcPrefix = srcPrefix;
+            this.dstPrefix = dstPrefix;
+            this.nextHopIp = nextHopIp;
+            this.nextHopHost = nextHopHost;
+            this.nextHopGatewayMac = nextHopGatewayMac;
+            this.encap = encap;
+            this.useSrcMac = useSrcMac;
+            this.srcCpValid = srcCpValid;
+            this.isDstLocalSubnet = isDstLocalSubnet;
+            this.borderRoutePrefixLength = borderRoutePrefixLength;
+        }
+    }
+
+    // Intent submit request merged within submit window
+    private static final class PendingSubmit {
+        private final boolean direct;  // direct flow rules; fixed by key
+        private final Set<ConnectPoint> ingressPoints = new HashSet<>();
+        private TrafficSelector selector;
+        private TrafficTreatment treatment;
+        private ConnectPoint egressPoint;
+        private int priority;
+        private List<Constraint> constraints;
+
+        private PendingSubmit(boolean direct, ConnectPoint srcCp, TrafficSelector selector,
+                              TrafficTreatment treatment, ConnectPoint egressPoint, int priority,
+                              List<Constraint> constraints) {
+            this.direct = direct;
+            update(srcCp, selector, treatment, egressPoint, priority, constraints);
+        }
+
+        private void update(ConnectPoint srcCp, TrafficSelector selector, TrafficTreatment treatment,
+                            ConnectPoint egressPoint, int priority, List<Constraint> constraints) {
+            this.ingressPoints.add(srcCp);
+            this.selector = selector;
+            this.treatment = treatment;
+            this.egressPoint = egressPoint;
+            this.priority = priority;
+            this.constraints = constraints;
+        }
+    }
+
+    // Route submit request sent to the owner node of the route key
+    // NOTE: key by its string and encapsulation by its name; rebuilt on the owner node
+    private static final class SubmitRequest {
+        private final String key;
+        private final boolean direct;
+        private final ConnectPoint srcCp;
+        private final TrafficSelector selector;
+        private final TrafficTreatment treatment;
+        private final ConnectPoint egressPoint;
+        private final int priority;
+        private final String encap;
+
+        private SubmitRequest(String key, boolean direct, ConnectPoint srcCp, TrafficSelector selector,
+                              TrafficTreatment treatment, ConnectPoint egressPoint, int priority, String encap) {
+            this.key = key;
+            this.direct = direct;
+            this.srcCp = srcCp;
+            this.selector = selector;
+            this.treatment = treatment;
+            this.egressPoint = egressPoint;
+            this.priority = priority;
+            this.encap = encap;
+        }
+    }
+
+    // Direct flow rule route toward egress point with its flow rules per in port of the sink tree
+    private static final class DirectRoute {
+        private final TrafficSelector selector;
+        private final TrafficTreatment treatment;
+        private final Set<ConnectPoint> ingressPoints;
+        private final ConnectPoint egressPoint;
+        private final int priority;
+        private final Map<ConnectPoint, FlowRule> rules = new HashMap<>();
+
+        private DirectRoute(TrafficSelector selector, TrafficTreatment treatment, Set<ConnectPoint> ingressPoints,
+                            ConnectPoint egressPoint, int priority) {
+            this.selector = selector;
+            this.treatment = treatment;
+            this.ingressPoints = ingressPoints;
+            this.egressPoint = egressPoint;
+            this.priority = priority;
+        }
+    }
+
+    // Host listener for decision invalidation, held packet release and proactive host routes
+    private class InternalHostListener implements HostListener {
+        @Override
+        public void event(HostEvent event) {
+            invalidateDecisions(event.subject());
+            if (event.prevSubject() != null) {
+                invalidateDecisions(event.prevSubject());  // ips removed by the update
+            }
+            switch (event.type()) {
+            case HOST_ADDED:
+            case HOST_MOVED:
+            case HOST_UPDATED:
+                releaseHeldPackets(event.subject());
+                if (isHostRouteChanged(event)) {
+                    provisionHostRoutes(event.subject());
+                }
+                break;
+            default:
+                // NOTE: routes to removed hosts are kept as reactive routes are; updated on rediscovery
+                break;
+            }
+        }
+    }
+
+    // checks if the host event changes routes to the host; mac, location or ips
+    private static boolean isHostRouteChanged(HostEvent event) {
+        Host host = event.subject();
+        Host prevHost = event.prevSubject();
+        return prevHost == null || !Objects.equals(host.mac(), prevHost.mac())
+                || !Objects.equals(host.location(), prevHost.location())
+                || !host.ipAddresses().equals(prevHost.ipAddresses());
+    }
+
     // Listener
     private class InternalSimpleFabricListener implements SimpleFabricListener {
         @Override
         public void event(SimpleFabricEvent event) {
             switch (event.type()) {
             case SIMPLE_FABRIC_UPDATED:
+                // cached decisions and in-flight setups are validated by fabric generation
                 refreshIntercepts();
                 refreshRouteIntents();
+                refreshDirectRoutes();
                 checkIntentsPurge();
+                provisionBorderRouteHosts();
                 break;
             case SIMPLE_FABRIC_FLUSH:
+                decisionCache.invalidateAll();
+                pendingSetups.invalidateAll();
                 withdrawAllReactiveIntents();
+                withdrawAllDirectRoutes();
                 checkIntentsPurge();
+                indexedBorderRoutes = ImmutableSet.of();  // border routes provisioned again on next event
+                borderRoutesByNextHop = ImmutableMap.of();
+                proactiveRouteKeys.clear();
                 break;
             case SIMPLE_FABRIC_IDLE:
                 refreshIntercepts();
                 refreshRouteIntents();
+                refreshDirectRoutes();
                 checkIntentsPurge();
+                provisionBorderRouteHosts();
                 monitorBorderPeers();
+                expireHeldPackets();
                 break;
             case SIMPLE_FABRIC_DUMP:
                 dump(event.subject(), event.out());
@@ -57,6 +57,48 @@ public interface SimpleFabricService
 
     // Simple fabric event related timers
     static final long IDLE_INTERVAL_MSEC = 5000;
+    static final long IDLE_MAX_GAP_MSEC = 15000;           // idle runs within this gap even after overruns
+    static final long FULL_REFRESH_INTERVAL_MSEC = 60000;  // full rebuild as consistency check
+    static final long REFRESH_MIN_SPACING_MSEC = 200;      // delta refresh quiet time and spacing
+    static final long REFRESH_MAX_DELAY_MSEC = 2000;       // delta refresh delay bound under event storm
+
+    // Neighbour resolution of requestMac; probes with exponential backoff from base up to max probes
+    static final long NEIGHBOUR_PROBE_BASE_MSEC = 1000;
+    static final int NEIGHBOUR_MAX_PROBES = 4;
+    static final long NEIGHBOUR_FAILED_HOLD_MSEC = 30000;  // no probes to failed neighbour until expired
+    static final long NEIGHBOUR_REACHABLE_MSEC = 30000;    // reachable neighbour becomes stale after
+    static final int NEIGHBOUR_TABLE_SIZE = 4096;
+
+    // Event queue size per sub module listener; IDLE and UPDATED events are collapsed in queue
+    static final int EVENT_QUEUE_SIZE = 16;
+
+    // Reactive routing decision cache size per (srcIp, dstIp, srcCp)
+    static final int REACTIVE_DECISION_CACHE_SIZE = 4096;
+
+    // Reactive intent submit window; requests on the same intent key within the window are merged
+    static final long REACTIVE_SUBMIT_WINDOW_MSEC = 50;
+
+    // Reactive in-flight setup per (intent key, srcCp); duplicate punted packets are forwarded only until timeout
+    static final long REACTIVE_SETUP_TIMEOUT_MSEC = 3000;
+    static final int REACTIVE_SETUP_TABLE_SIZE = 4096;
+
+    // Reactive packet-in admission by token buckets per ingress port and per (ingress port, srcIp)
+    static final double REACTIVE_PORT_RATE_PPS = 1000;    // packets per second per ingress port
+    static final double REACTIVE_PORT_BURST = 2000;       // bucket depth per ingress port
+    static final double REACTIVE_SRC_RATE_PPS = 100;      // packets per second per (ingress port, srcIp)
+    static final double REACTIVE_SRC_BURST = 200;         // bucket depth per (ingress port, srcIp)
+    static final int REACTIVE_ADMISSION_TABLE_SIZE = 65536;
+    static final long REACTIVE_ADMISSION_IDLE_MSEC = 60000;  // bucket expiry on no packets
+
+    // Reactive packet workers striped by destination prefix; packets over the queue size are dropped
+    static final int REACTIVE_WORKER_STRIPES = 4;
+    static final int REACTIVE_WORKER_QUEUE_SIZE = 1024;
+
+    // Reactive packet hold queue per unresolved next hop; released on host discovery of the next hop
+    static final int REACTIVE_HOLD_QUEUE_SIZE = 32;          // packets per next hop
+    static final int REACTIVE_HOLD_QUEUE_BYTES = 65536;      // bytes per next hop
+    static final int REACTIVE_HOLD_NEXT_HOPS = 1024;         // next hops with hold queue
+    static final long REACTIVE_HOLD_TTL_MSEC = 3000;
 
     // Feature control parameters
     static final boolean ALLOW_IPV6 = false;
@@ -65,6 +107,9 @@ public interface SimpleFabricService
     static final boolean REACTIVE_ALLOW_LINK_CP = false;  // MUST BE false (yjlee, 2017-10-18)
     static final boolean REACTIVE_HASHED_PATH_SELECTION = false;
     static final boolean REACTIVE_MATCH_IP_PROTO = false;
+    static final boolean REACTIVE_DIRECT_FLOW_RULES = false;  // flow rules on sink tree instead of mp2p intents
+    static final boolean REACTIVE_PROACTIVE_HOST_ROUTES = false;  // routes to hosts on discovery before packets
+    static final int REACTIVE_PROACTIVE_ROUTES_MAX = 4096;  // proactive route keys per node; others left reactive
 
     /**
      * Gets appId.
@@ -152,6 +197,24 @@ public interface SimpleFabricService
      */
     Route findBorderRoute(IpAddress ipAddress);
 
+    /**
+     * Finds the IpSubnet containing the destination ip of the packet header;
+     * looks up by the raw address words of the header.
+     *
+     * @param header the packet header
+     * @return the IpSubnet for the destination ip or null
+     */
+    IpSubnet findDstIpSubnet(PacketHeader header);
+
+    /**
+     * Finds the Border Route containing the destination ip of the packet header;
+     * looks up by the raw address words of the header.
+     *
+     * @param header the packet header
+     * @return the Border Route for the destination ip or null
+     */
+    Route findDstBorderRoute(PacketHeader header);
+
     /**
      * Finds the network interface related to the host.
      *
@@ -160,8 +223,18 @@ public interface SimpleFabricService
      */
     Interface findHostInterface(Host host);
 
+    /**
+     * Gets the generation of fabric states; increased on each refresh with changes of ipSubnets,
+     * border routes or l2Network interfaces to validate lookup results cached by sub modules.
+     * Host changes do not increase the generation; sub modules caching host lookups handle host events.
+     *
+     * @return the current generation
+     */
+    long getGeneration();
+
     /**
      * Sends Neighbour Query (ARP or NDP) to Find Host Location.
+     * Requests within the retransmit backoff of the ip or to the failed ip are suppressed.
      *
      * @param ip the ip address to resolve
      * @return true if request mac packets are emitted. otherwise false
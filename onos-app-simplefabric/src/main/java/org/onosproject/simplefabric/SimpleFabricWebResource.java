@@ -79,6 +79,19 @@ public class SimpleFabricWebResource extends AbstractWebResource {
         return Response.ok(outputStream.toString()).build();
     }
 
+    /**
+     * SIMPLE_FABRIC Statistics Infos.
+     *
+     * @return 200 OK
+     */
+    @GET
+    @Path("stats")
+    public Response queryStats() {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        get(SimpleFabricService.class).dumpToStream("stats", outputStream);
+        return Response.ok(outputStream.toString()).build();
+    }
+
     /**
      * Trigger SimpleFabric Service Refresh.
      *
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2017-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onosproject.simplefabric;
+
+/**
+ * Token bucket refilled at rate per second up to burst; thread safe.
+ * Starts full, and times are given by caller.
+ */
+final class TokenBucket {
+
+    private final double ratePerMsec;
+    private final double burst;
+    private double tokens;  // guarded by this
+    private long lastTime;  // guarded by this
+
+    /**
+     * Creates a full token bucket.
+     *
+     * @param ratePerSec the refill rate in tokens per second
+     * @param burst the max number of tokens
+     * @param now the current time in milliseconds
+     */
+    TokenBucket(double ratePerSec, double burst, long now) {
+        this.ratePerMsec = ratePerSec / 1000;
+        this.burst = burst;
+        this.tokens = burst;
+        this.lastTime = now;
+    }
+
+    /**
+     * Refills the bucket up to now and takes a token if any.
+     * Time going backward refills nothing.
+     *
+     * @param now the current time in milliseconds
+     * @return true if a token is taken
+     */
+    synchronized boolean tryAcquire(long now) {
+        if (now > lastTime) {
+            tokens = Math.min(burst, tokens + (now - lastTime) * ratePerMsec);
+            lastTime = now;
+        }
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onosproject.simplefabric;
+
+import com.google.common.collect.ImmutableMap;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.MacAddress;
+
+import java.util.Map;
+
+/**
+ * Immutable virtual gateway table for gateway mac membership and gateway ip to mac lookups.
+ * MAC and IPv4 address keys are kept in open addressing primitive long arrays, so lookups
+ * on raw values allocate nothing; IPv6 gateway ips are looked up by map.
+ */
+public final class VirtualGatewayTable {
+
+    // slots hold (key + 1); 0 means empty slot as 48 bit mac and 32 bit ip keys never overflow
+    private final long[] macSlots;
+    private final long[] ip4Slots;
+    private final MacAddress[] ip4Macs;
+    private final Map<IpAddress, MacAddress> ipMacMap;
+
+    private VirtualGatewayTable(Map<IpAddress, MacAddress> gatewayIpMacMap) {
+        ipMacMap = ImmutableMap.copyOf(gatewayIpMacMap);
+        macSlots = new long[slotCount(ipMacMap.size())];
+        ip4Slots = new long[slotCount(ipMacMap.size())];
+        ip4Macs = new MacAddress[ip4Slots.length];
+        for (Map.Entry<IpAddress, MacAddress> entry : ipMacMap.entrySet()) {
+            insert(macSlots, entry.getValue().toLong() + 1);
+            if (entry.getKey().isIp4()) {
+                int slot = insert(ip4Slots, (entry.getKey().getIp4Address().toInt() & 0xffffffffL) + 1);
+                ip4Macs[slot] = entry.getValue();
+            }
+        }
+    }
+
+    /**
+     * Creates a table of the gateway ip and mac addresses.
+     *
+     * @param gatewayIpMacMap the gateway mac addresses by gateway ip
+     * @return the table
+     */
+    public static VirtualGatewayTable of(Map<IpAddress, MacAddress> gatewayIpMacMap) {
+        return new VirtualGatewayTable(gatewayIpMacMap);
+    }
+
+    /**
+     * Evaluates whether the mac is of any gateway.
+     *
+     * @param mac the mac address to evaluate
+     * @return true if the mac is a gateway mac
+     */
+    public boolean containsMac(MacAddress mac) {
+        return containsMac(mac.toLong());
+    }
+
+    /**
+     * Evaluates whether the mac value is of any gateway.
+     *
+     * @param mac the 48 bit mac address value
+     * @return true if the mac is a gateway mac
+     */
+    public boolean containsMac(long mac) {
+        return find(macSlots, mac + 1) >= 0;
+    }
+
+    /**
+     * Finds the gateway mac of the gateway ip.
+     *
+     * @param ip the gateway ip address
+     * @return the gateway mac or null if the ip is not a gateway ip
+     */
+    public MacAddress findMac(IpAddress ip) {
+        if (ip.isIp4()) {
+            return findMac4(ip.getIp4Address().toInt());
+        }
+        return ipMacMap.get(ip);
+    }
+
+    /**
+     * Finds the gateway mac of the IPv4 gateway ip.
+     *
+     * @param ip4 the IPv4 address as int in network byte order
+     * @return the gateway mac or null if the ip is not a gateway ip
+     */
+    public MacAddress findMac4(int ip4) {
+        int slot = find(ip4Slots, (ip4 & 0xffffffffL) + 1);
+        return (slot >= 0) ? ip4Macs[slot] : null;
+    }
+
+    // power of two slot count keeping load factor at most 0.5
+    private static int slotCount(int size) {
+        return Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
+    }
+
+    private static int hash(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    // returns the slot of the key
+    private static int insert(long[] slots, long key) {
+        int mask = slots.length - 1;
+        int slot = hash(key, mask);
+        while (slots[slot] != 0 && slots[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = key;
+        return slot;
+    }
+
+    // returns the slot of the key or -1 if not found
+    private static int find(long[] slots, long key) {
+        int mask = slots.length - 1;
+        int slot = hash(key, mask);
+        while (slots[slot] != 0) {
+            if (slots[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+}
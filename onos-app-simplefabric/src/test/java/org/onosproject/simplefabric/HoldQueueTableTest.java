@@ -0,0 +1,134 @@
+/*
+ * Copyright 2017-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onosproject.simplefabric;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+import org.onlab.packet.IpAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.onosproject.simplefabric.HoldQueueTable.HoldResult.DROPPED;
+import static org.onosproject.simplefabric.HoldQueueTable.HoldResult.HELD;
+import static org.onosproject.simplefabric.HoldQueueTable.HoldResult.HELD_FIRST;
+
+/**
+ * Unit tests for HoldQueueTable.
+ */
+public class HoldQueueTableTest {
+
+    private static final IpAddress HOP_A = IpAddress.valueOf("10.0.1.1");
+    private static final IpAddress HOP_B = IpAddress.valueOf("10.0.2.1");
+    private static final IpAddress HOP_C = IpAddress.valueOf("2001:db8::1");
+    private static final long TTL = 3000;
+    private static final long T0 = 1000000L;
+
+    // packets are strings sized by their length
+    private static HoldQueueTable<String> table(int maxNextHops, int maxPackets, int maxBytes) {
+        return new HoldQueueTable<>(maxNextHops, maxPackets, maxBytes, TTL, String::length);
+    }
+
+    /**
+     * Tests that packets are held per next hop and released in arrival order.
+     */
+    @Test
+    public void testHoldAndRelease() {
+        HoldQueueTable<String> table = table(4, 4, 1000);
+        assertEquals(HELD_FIRST, table.hold(HOP_A, "a1", T0));
+        assertEquals(HELD, table.hold(HOP_A, "a2", T0 + 1));
+        assertEquals(HELD_FIRST, table.hold(HOP_B, "b1", T0 + 2));
+        assertEquals(2, table.nextHopCount());
+        assertEquals(3, table.packetCount());
+
+        assertEquals(ImmutableList.of("a1", "a2"), table.release(ImmutableSet.of(HOP_A, HOP_C), T0 + 3));
+        assertEquals(1, table.nextHopCount());
+        assertTrue(table.release(ImmutableSet.of(HOP_A), T0 + 3).isEmpty());
+        assertEquals("nextHops=1 packets=1 held=3 released=2 overflowDropped=0 expiredDropped=0",
+                     table.toString());
+    }
+
+    /**
+     * Tests the cap of packets per next hop.
+     */
+    @Test
+    public void testPacketCap() {
+        HoldQueueTable<String> table = table(4, 2, 1000);
+        assertEquals(HELD_FIRST, table.hold(HOP_A, "a1", T0));
+        assertEquals(HELD, table.hold(HOP_A, "a2", T0));
+        assertEquals(DROPPED, table.hold(HOP_A, "a3", T0));
+        assertEquals(HELD_FIRST, table.hold(HOP_B, "b1", T0));
+        assertEquals(ImmutableList.of("a1", "a2"), table.release(ImmutableSet.of(HOP_A), T0));
+    }
+
+    /**
+     * Tests the cap of bytes per next hop.
+     */
+    @Test
+    public void testByteCap() {
+        HoldQueueTable<String> table = table(4, 10, 8);
+        assertEquals(DROPPED, table.hold(HOP_A, "123456789", T0));
+        assertEquals(0, table.nextHopCount());
+        assertEquals(HELD_FIRST, table.hold(HOP_A, "12345", T0));
+        assertEquals(DROPPED, table.hold(HOP_A, "1234", T0));
+        assertEquals(HELD, table.hold(HOP_A, "123", T0));
+        assertEquals(DROPPED, table.hold(HOP_A, "1", T0));
+        assertEquals(ImmutableList.of("12345", "123"), table.release(ImmutableSet.of(HOP_A), T0));
+    }
+
+    /**
+     * Tests the cap of next hops with hold queue.
+     */
+    @Test
+    public void testNextHopCap() {
+        HoldQueueTable<String> table = table(2, 4, 1000);
+        assertEquals(HELD_FIRST, table.hold(HOP_A, "a1", T0));
+        assertEquals(HELD_FIRST, table.hold(HOP_B, "b1", T0));
+        assertEquals(DROPPED, table.hold(HOP_C, "c1", T0));
+        assertEquals(HELD, table.hold(HOP_A, "a2", T0));
+
+        // a released next hop frees its slot
+        table.release(ImmutableSet.of(HOP_B), T0);
+        assertEquals(HELD_FIRST, table.hold(HOP_C, "c1", T0));
+        assertEquals("nextHops=2 packets=3 held=4 released=1 overflowDropped=1 expiredDropped=0",
+                     table.toString());
+    }
+
+    /**
+     * Tests that packets held over ttl are dropped on hold, release and expire, freeing their caps.
+     */
+    @Test
+    public void testTtlExpiry() {
+        HoldQueueTable<String> table = table(4, 2, 1000);
+        assertEquals(HELD_FIRST, table.hold(HOP_A, "a1", T0));
+        assertEquals(HELD, table.hold(HOP_A, "a2", T0 + 1000));
+        assertEquals(DROPPED, table.hold(HOP_A, "a3", T0 + TTL));
+
+        // a1 is expired on hold, so a3 fits
+        assertEquals(HELD, table.hold(HOP_A, "a3", T0 + TTL + 1));
+        assertEquals(ImmutableList.of("a2", "a3"), table.release(ImmutableSet.of(HOP_A), T0 + TTL + 1));
+
+        assertEquals(HELD_FIRST, table.hold(HOP_B, "b1", T0));
+        assertEquals(HELD_FIRST, table.hold(HOP_C, "c1", T0 + TTL));
+        table.expire(T0 + TTL + 1);
+        assertEquals(1, table.nextHopCount());
+        assertTrue(table.release(ImmutableSet.of(HOP_C), T0 + 2 * TTL + 1).isEmpty());
+        assertEquals(0, table.nextHopCount());
+        assertEquals("nextHops=0 packets=0 held=5 released=2 overflowDropped=1 expiredDropped=3",
+                     table.toString());
+    }
+}
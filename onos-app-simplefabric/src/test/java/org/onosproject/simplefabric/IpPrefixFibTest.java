@@ -0,0 +1,197 @@
+/*
+ * Copyright 2017-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onosproject.simplefabric;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.IpPrefix;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for IpPrefixFib.
+ */
+public class IpPrefixFibTest {
+
+    private IpPrefixFib<String> fib;
+
+    @Before
+    public void setUp() {
+        fib = new IpPrefixFib<>();
+    }
+
+    private void put(String... prefixes) {
+        for (String prefix : prefixes) {
+            fib.put(IpPrefix.valueOf(prefix), prefix);
+        }
+    }
+
+    private boolean remove(String prefix) {
+        return fib.remove(IpPrefix.valueOf(prefix));
+    }
+
+    private String lookup(String ip) {
+        return fib.lookup(IpAddress.valueOf(ip));
+    }
+
+    /**
+     * Tests that an empty fib matches nothing.
+     */
+    @Test
+    public void testEmpty() {
+        assertEquals(0, fib.size());
+        assertNull(lookup("10.0.0.1"));
+        assertNull(lookup("2001:db8::1"));
+        assertFalse(remove("10.0.0.0/8"));
+    }
+
+    /**
+     * Tests longest prefix match of IPv4 prefixes on all stride levels.
+     */
+    @Test
+    public void testIp4LongestPrefixMatch() {
+        put("0.0.0.0/0", "10.0.0.0/8", "10.1.0.0/16", "10.1.0.0/18", "10.1.2.0/24", "10.1.2.128/25",
+            "10.1.2.3/32");
+        assertEquals(7, fib.size());
+        assertEquals("10.1.2.3/32", lookup("10.1.2.3"));
+        assertEquals("10.1.2.128/25", lookup("10.1.2.200"));
+        assertEquals("10.1.2.0/24", lookup("10.1.2.4"));
+        assertEquals("10.1.0.0/18", lookup("10.1.3.1"));
+        assertEquals("10.1.0.0/16", lookup("10.1.64.1"));
+        assertEquals("10.0.0.0/8", lookup("10.2.0.1"));
+        assertEquals("0.0.0.0/0", lookup("11.0.0.1"));
+    }
+
+    /**
+     * Tests that a shorter prefix put after a longer prefix keeps the slots of the longer one.
+     */
+    @Test
+    public void testShorterPrefixAfterLonger() {
+        put("10.1.16.0/20", "10.1.0.0/18");
+        assertEquals("10.1.16.0/20", lookup("10.1.17.1"));
+        assertEquals("10.1.0.0/18", lookup("10.1.1.1"));
+    }
+
+    /**
+     * Tests longest prefix match of IPv6 prefixes across the 64 bit word boundary.
+     */
+    @Test
+    public void testIp6LongestPrefixMatch() {
+        put("2001:db8::/32", "2001:db8:1::/48", "2001:db8:1:0:1::/80", "2001:db8:1::1/128");
+        assertEquals("2001:db8:1::1/128", lookup("2001:db8:1::1"));
+        assertEquals("2001:db8:1:0:1::/80", lookup("2001:db8:1:0:1::2"));
+        assertEquals("2001:db8:1::/48", lookup("2001:db8:1:1::1"));
+        assertEquals("2001:db8::/32", lookup("2001:db8:2::1"));
+        assertNull(lookup("2001:db9::1"));
+        assertNull(lookup("10.0.0.1"));
+    }
+
+    /**
+     * Tests that the value of the same prefix put again is replaced.
+     */
+    @Test
+    public void testReplace() {
+        fib.put(IpPrefix.valueOf("10.1.0.0/16"), "first");
+        fib.put(IpPrefix.valueOf("10.1.0.0/16"), "second");
+        assertEquals(1, fib.size());
+        assertEquals("second", lookup("10.1.2.3"));
+    }
+
+    /**
+     * Tests that a removed prefix falls back to the covering prefix of the same level.
+     */
+    @Test
+    public void testRemoveSameLevelCover() {
+        put("10.1.0.0/18", "10.1.16.0/20");
+        assertTrue(remove("10.1.16.0/20"));
+        assertEquals(1, fib.size());
+        assertEquals("10.1.0.0/18", lookup("10.1.17.1"));
+        assertFalse(remove("10.1.16.0/20"));
+    }
+
+    /**
+     * Tests that a removed prefix falls back to the covering prefix of an upper level.
+     */
+    @Test
+    public void testRemoveUpperLevelCover() {
+        put("10.0.0.0/8", "10.1.2.0/24", "10.1.2.3/32");
+        assertTrue(remove("10.1.2.3/32"));
+        assertEquals("10.1.2.0/24", lookup("10.1.2.3"));
+        assertTrue(remove("10.1.2.0/24"));
+        assertEquals("10.0.0.0/8", lookup("10.1.2.3"));
+        assertTrue(remove("10.0.0.0/8"));
+        assertNull(lookup("10.1.2.3"));
+        assertEquals(0, fib.size());
+    }
+
+    /**
+     * Tests that removal leaves sibling prefixes intact and freed entries are reused.
+     */
+    @Test
+    public void testRemoveAndReput() {
+        put("10.1.2.0/24", "10.1.3.0/24");
+        assertTrue(remove("10.1.2.0/24"));
+        assertNull(lookup("10.1.2.1"));
+        assertEquals("10.1.3.0/24", lookup("10.1.3.1"));
+        put("10.1.2.0/24");
+        assertEquals(2, fib.size());
+        assertEquals("10.1.2.0/24", lookup("10.1.2.1"));
+    }
+
+    /**
+     * Tests that bulk load replaces all prefix entries.
+     */
+    @Test
+    public void testLoad() {
+        put("192.168.0.0/16");
+        Map<IpPrefix, String> entries = new HashMap<>();
+        for (String prefix : new String[] {"10.0.0.0/8", "10.1.2.0/24", "10.1.0.0/16", "2001:db8::/32"}) {
+            entries.put(IpPrefix.valueOf(prefix), prefix);
+        }
+        fib.load(entries);
+        assertEquals(4, fib.size());
+        assertNull(lookup("192.168.1.1"));
+        assertEquals("10.1.2.0/24", lookup("10.1.2.1"));
+        assertEquals("10.1.0.0/16", lookup("10.1.3.1"));
+        assertEquals("10.0.0.0/8", lookup("10.2.0.1"));
+        assertEquals("2001:db8::/32", lookup("2001:db8::1"));
+        assertTrue(remove("10.1.0.0/16"));
+        assertEquals("10.0.0.0/8", lookup("10.1.3.1"));
+        assertEquals("10.1.2.0/24", lookup("10.1.2.1"));
+    }
+
+    /**
+     * Tests that raw address word lookups match the ip address lookups.
+     */
+    @Test
+    public void testRawAddressLookup() {
+        put("10.1.0.0/16", "2001:db8:1::/48");
+        assertEquals("10.1.0.0/16", fib.lookup4(0x0a010203));
+        assertEquals("10.1.0.0/16", fib.lookup(true, 0x0a010203L, 0L));
+        assertNull(fib.lookup(true, 0x0a020203L, 0L));
+        assertEquals("2001:db8:1::/48", fib.lookup6(0x20010db800010000L, 1L));
+        assertEquals("2001:db8:1::/48", fib.lookup(false, 0x20010db800010000L, 1L));
+        assertNull(fib.lookup(false, 0x20010db800020000L, 1L));
+    }
+}
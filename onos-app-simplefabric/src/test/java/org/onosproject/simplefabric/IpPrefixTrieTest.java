@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onosproject.simplefabric;
+
+import org.junit.Test;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.IpPrefix;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for IpPrefixTrie.
+ */
+public class IpPrefixTrieTest {
+
+    private static IpPrefixTrie<String> trie(String... prefixes) {
+        IpPrefixTrie.Builder<String> builder = IpPrefixTrie.builder();
+        for (String prefix : prefixes) {
+            builder.put(IpPrefix.valueOf(prefix), prefix);
+        }
+        return builder.build();
+    }
+
+    private static String lookup(IpPrefixTrie<String> trie, String ip) {
+        return trie.lookup(IpAddress.valueOf(ip));
+    }
+
+    /**
+     * Tests that an empty trie matches nothing.
+     */
+    @Test
+    public void testEmpty() {
+        IpPrefixTrie<String> trie = IpPrefixTrie.empty();
+        assertTrue(trie.isEmpty());
+        assertEquals(0, trie.size());
+        assertNull(lookup(trie, "10.0.0.1"));
+        assertNull(lookup(trie, "2001:db8::1"));
+    }
+
+    /**
+     * Tests longest prefix match of IPv4 addresses.
+     */
+    @Test
+    public void testIp4LongestPrefixMatch() {
+        IpPrefixTrie<String> trie = trie("10.0.0.0/8", "10.1.0.0/16", "10.1.2.0/24", "10.1.2.3/32");
+        assertEquals(4, trie.size());
+        assertFalse(trie.isEmpty());
+        assertEquals("10.1.2.3/32", lookup(trie, "10.1.2.3"));
+        assertEquals("10.1.2.0/24", lookup(trie, "10.1.2.4"));
+        assertEquals("10.1.0.0/16", lookup(trie, "10.1.3.1"));
+        assertEquals("10.0.0.0/8", lookup(trie, "10.2.0.1"));
+        assertNull(lookup(trie, "11.0.0.1"));
+    }
+
+    /**
+     * Tests that the default route matches all addresses of its family only.
+     */
+    @Test
+    public void testDefaultRoute() {
+        IpPrefixTrie<String> trie = trie("0.0.0.0/0", "192.168.0.0/16");
+        assertEquals("192.168.0.0/16", lookup(trie, "192.168.1.1"));
+        assertEquals("0.0.0.0/0", lookup(trie, "8.8.8.8"));
+        assertEquals("0.0.0.0/0", lookup(trie, "255.255.255.255"));
+        assertNull(lookup(trie, "2001:db8::1"));
+    }
+
+    /**
+     * Tests longest prefix match of IPv6 addresses across the 64 bit word boundary.
+     */
+    @Test
+    public void testIp6LongestPrefixMatch() {
+        IpPrefixTrie<String> trie = trie("2001:db8::/32", "2001:db8:1::/48",
+                                         "2001:db8:1:0:1::/80", "2001:db8:1::1/128");
+        assertEquals("2001:db8:1::1/128", lookup(trie, "2001:db8:1::1"));
+        assertEquals("2001:db8:1:0:1::/80", lookup(trie, "2001:db8:1:0:1::2"));
+        assertEquals("2001:db8:1::/48", lookup(trie, "2001:db8:1:1::1"));
+        assertEquals("2001:db8::/32", lookup(trie, "2001:db8:2::1"));
+        assertNull(lookup(trie, "2001:db9::1"));
+        assertNull(lookup(trie, "10.0.0.1"));
+    }
+
+    /**
+     * Tests that the value of the same prefix put again is replaced.
+     */
+    @Test
+    public void testReplace() {
+        IpPrefixTrie<String> trie = IpPrefixTrie.<String>builder()
+                .put(IpPrefix.valueOf("10.0.0.0/8"), "first")
+                .put(IpPrefix.valueOf("10.0.0.0/8"), "second")
+                .build();
+        assertEquals(1, trie.size());
+        assertEquals("second", lookup(trie, "10.0.0.1"));
+    }
+
+    /**
+     * Tests that raw address word lookups match the ip address lookups.
+     */
+    @Test
+    public void testRawAddressLookup() {
+        IpPrefixTrie<String> trie = trie("10.1.0.0/16", "2001:db8:1::/48");
+        assertEquals("10.1.0.0/16", trie.lookup4(0x0a010203));
+        assertEquals("10.1.0.0/16", trie.lookup(true, 0x0a010203L, 0L));
+        assertNull(trie.lookup(true, 0x0a020203L, 0L));
+        assertEquals("2001:db8:1::/48", trie.lookup6(0x20010db800010000L, 1L));
+        assertEquals("2001:db8:1::/48", trie.lookup(false, 0x20010db800010000L, 1L));
+        assertNull(trie.lookup(false, 0x20010db800020000L, 1L));
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2017-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onosproject.simplefabric;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+import org.onlab.packet.IpAddress;
+
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.onosproject.simplefabric.SimpleFabricService.NEIGHBOUR_FAILED_HOLD_MSEC;
+import static org.onosproject.simplefabric.SimpleFabricService.NEIGHBOUR_MAX_PROBES;
+import static org.onosproject.simplefabric.SimpleFabricService.NEIGHBOUR_PROBE_BASE_MSEC;
+import static org.onosproject.simplefabric.SimpleFabricService.NEIGHBOUR_REACHABLE_MSEC;
+
+/**
+ * Unit tests for NeighbourTable.
+ */
+public class NeighbourTableTest {
+
+    private static final IpAddress IP_A = IpAddress.valueOf("10.0.1.10");
+    private static final IpAddress IP_B = IpAddress.valueOf("10.0.1.11");
+    private static final IpAddress IP_C = IpAddress.valueOf("2001:db8::10");
+    private static final Predicate<IpAddress> UNRESOLVED = ip -> false;
+    private static final Predicate<IpAddress> RESOLVED = ip -> true;
+    private static final long T0 = 1000000L;
+
+    // probes IP_A until failed from T0 and returns the time of failure
+    private static long probeUntilFailed(NeighbourTable table) {
+        long now = T0;
+        for (int i = 0; i < NEIGHBOUR_MAX_PROBES; i++) {
+            assertTrue(table.admitProbe(IP_A, now, UNRESOLVED));
+            now += NEIGHBOUR_PROBE_BASE_MSEC << i;
+        }
+        assertFalse(table.admitProbe(IP_A, now, UNRESOLVED));
+        assertEquals(NeighbourTable.State.FAILED, table.state(IP_A));
+        return now;
+    }
+
+    /**
+     * Tests that probe intervals double until max probes and the neighbour fails then.
+     */
+    @Test
+    public void testBackoffDoubling() {
+        NeighbourTable table = new NeighbourTable(16);
+        long now = T0;
+        for (int i = 0; i < NEIGHBOUR_MAX_PROBES; i++) {
+            long interval = NEIGHBOUR_PROBE_BASE_MSEC << i;
+            assertTrue(table.admitProbe(IP_A, now, UNRESOLVED));
+            assertEquals(NeighbourTable.State.INCOMPLETE, table.state(IP_A));
+            // suppressed within the interval, not yet due on refresh
+            assertFalse(table.admitProbe(IP_A, now + interval - 1, UNRESOLVED));
+            assertTrue(table.refresh(now + interval - 1).isEmpty());
+            now += interval;
+            assertEquals(ImmutableList.of(IP_A), table.refresh(now));
+        }
+        assertFalse(table.admitProbe(IP_A, now, UNRESOLVED));
+        assertEquals(NeighbourTable.State.FAILED, table.state(IP_A));
+        assertTrue(table.refresh(now).isEmpty());
+        assertEquals("probes=" + NEIGHBOUR_MAX_PROBES + " suppressed=" + NEIGHBOUR_MAX_PROBES + " failed=1",
+                     table.toString());
+    }
+
+    /**
+     * Tests that failed neighbours are held without probes and are probed again after the hold.
+     */
+    @Test
+    public void testFailedHoldAndReentry() {
+        NeighbourTable table = new NeighbourTable(16);
+        long failTime = probeUntilFailed(table);
+        assertFalse(table.admitProbe(IP_A, failTime + NEIGHBOUR_FAILED_HOLD_MSEC - 1, UNRESOLVED));
+        assertEquals(NeighbourTable.State.FAILED, table.state(IP_A));
+
+        // re-entry starts the backoff over from the base interval
+        long now = failTime + NEIGHBOUR_FAILED_HOLD_MSEC;
+        assertTrue(table.admitProbe(IP_A, now, UNRESOLVED));
+        assertEquals(NeighbourTable.State.INCOMPLETE, table.state(IP_A));
+        assertFalse(table.admitProbe(IP_A, now + NEIGHBOUR_PROBE_BASE_MSEC - 1, UNRESOLVED));
+        assertTrue(table.admitProbe(IP_A, now + NEIGHBOUR_PROBE_BASE_MSEC, UNRESOLVED));
+    }
+
+    /**
+     * Tests that failed neighbours not requested again expire after the hold.
+     */
+    @Test
+    public void testFailedExpiry() {
+        NeighbourTable table = new NeighbourTable(16);
+        long failTime = probeUntilFailed(table);
+        assertEquals(1, table.size());
+        table.refresh(failTime + NEIGHBOUR_FAILED_HOLD_MSEC - 1);
+        assertEquals(1, table.size());
+        table.refresh(failTime + NEIGHBOUR_FAILED_HOLD_MSEC);
+        assertEquals(0, table.size());
+        assertNull(table.state(IP_A));
+    }
+
+    /**
+     * Tests that reachable neighbours are not probed, then become stale and are probed once for refresh.
+     */
+    @Test
+    public void testReachableToStale() {
+        NeighbourTable table = new NeighbourTable(16);
+        assertTrue(table.admitProbe(IP_A, T0, UNRESOLVED));
+        table.updateHost(ImmutableSet.of(IP_A), false, T0);
+        assertEquals(NeighbourTable.State.REACHABLE, table.state(IP_A));
+        assertFalse(table.admitProbe(IP_A, T0 + NEIGHBOUR_REACHABLE_MSEC - 1, RESOLVED));
+        assertEquals(NeighbourTable.State.REACHABLE, table.state(IP_A));
+
+        // stale one is probed even if known by host discovery
+        long now = T0 + NEIGHBOUR_REACHABLE_MSEC;
+        assertTrue(table.admitProbe(IP_A, now, RESOLVED));
+        assertEquals(NeighbourTable.State.STALE, table.state(IP_A));
+
+        // and confirmed reachable on the next request if still known
+        now += NEIGHBOUR_PROBE_BASE_MSEC;
+        assertFalse(table.admitProbe(IP_A, now, RESOLVED));
+        assertEquals(NeighbourTable.State.REACHABLE, table.state(IP_A));
+    }
+
+    /**
+     * Tests that a stale neighbour not confirmed fails after max probes.
+     */
+    @Test
+    public void testStaleToFailed() {
+        NeighbourTable table = new NeighbourTable(16);
+        assertTrue(table.admitProbe(IP_A, T0, UNRESOLVED));
+        table.updateHost(ImmutableSet.of(IP_A), false, T0);
+        long now = T0 + NEIGHBOUR_REACHABLE_MSEC;
+        for (int i = 0; i < NEIGHBOUR_MAX_PROBES; i++) {
+            assertTrue(table.admitProbe(IP_A, now, UNRESOLVED));
+            assertEquals(NeighbourTable.State.STALE, table.state(IP_A));
+            now += NEIGHBOUR_PROBE_BASE_MSEC << i;
+        }
+        assertFalse(table.admitProbe(IP_A, now, UNRESOLVED));
+        assertEquals(NeighbourTable.State.FAILED, table.state(IP_A));
+    }
+
+    /**
+     * Tests that a new neighbour already known by host discovery is not probed.
+     */
+    @Test
+    public void testResolvedNotProbed() {
+        NeighbourTable table = new NeighbourTable(16);
+        assertFalse(table.admitProbe(IP_C, T0, RESOLVED));
+        assertEquals(NeighbourTable.State.REACHABLE, table.state(IP_C));
+        assertEquals("probes=0 suppressed=1 failed=0", table.toString());
+    }
+
+    /**
+     * Tests that host removal drops the neighbour, so it is probed from scratch.
+     */
+    @Test
+    public void testHostRemoved() {
+        NeighbourTable table = new NeighbourTable(16);
+        assertTrue(table.admitProbe(IP_A, T0, UNRESOLVED));
+        table.updateHost(ImmutableSet.of(IP_A, IP_B), true, T0);
+        assertNull(table.state(IP_A));
+        assertTrue(table.admitProbe(IP_A, T0, UNRESOLVED));
+    }
+
+    /**
+     * Tests that new neighbours over the table size are suppressed until others expire.
+     */
+    @Test
+    public void testTableSize() {
+        NeighbourTable table = new NeighbourTable(1);
+        assertTrue(table.admitProbe(IP_A, T0, UNRESOLVED));
+        assertFalse(table.admitProbe(IP_B, T0, UNRESOLVED));
+        assertNull(table.state(IP_B));
+
+        // IP_A not requested again expires after its probe deadline plus failed hold
+        long now = T0 + NEIGHBOUR_PROBE_BASE_MSEC + NEIGHBOUR_FAILED_HOLD_MSEC;
+        assertTrue(table.admitProbe(IP_B, now, UNRESOLVED));
+        assertNull(table.state(IP_A));
+        assertEquals(1, table.size());
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2017-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onosproject.simplefabric;
+
+import org.junit.Test;
+import org.onlab.packet.Ethernet;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.MacAddress;
+import org.onlab.packet.VlanId;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for PacketHeader.
+ */
+public class PacketHeaderTest {
+
+    private static final MacAddress DST_MAC = MacAddress.valueOf("52:54:00:00:00:01");
+    private static final MacAddress SRC_MAC = MacAddress.valueOf("00:00:00:00:00:02");
+    private static final IpAddress SRC_IP4 = IpAddress.valueOf("10.0.1.2");
+    private static final IpAddress DST_IP4 = IpAddress.valueOf("10.0.2.3");
+    private static final IpAddress SRC_IP6 = IpAddress.valueOf("2001:db8:1::2");
+    private static final IpAddress DST_IP6 = IpAddress.valueOf("2001:db8:2::3");
+    private static final byte PROTO_UDP = 17;
+
+    // builds an ethernet frame with vlan tags of the tag ether types and an ip header
+    private static ByteBuffer frame(short[] tagTypes, short[] vlans, short etherType,
+                                    IpAddress srcIp, IpAddress dstIp, byte ipProto) {
+        ByteBuffer bb = ByteBuffer.allocate(128);
+        bb.put(DST_MAC.toBytes());
+        bb.put(SRC_MAC.toBytes());
+        for (int i = 0; i < tagTypes.length; i++) {
+            bb.putShort(tagTypes[i]);
+            bb.putShort(vlans[i]);
+        }
+        bb.putShort(etherType);
+        if (etherType == Ethernet.TYPE_IPV4) {
+            bb.put((byte) 0x45).put((byte) 0).putShort((short) 20);
+            bb.putInt(0);
+            bb.put((byte) 64).put(ipProto).putShort((short) 0);
+            bb.put(srcIp.toOctets());
+            bb.put(dstIp.toOctets());
+        } else if (etherType == Ethernet.TYPE_IPV6) {
+            bb.putInt(0x60000000);
+            bb.putShort((short) 0).put(ipProto).put((byte) 64);
+            bb.put(srcIp.toOctets());
+            bb.put(dstIp.toOctets());
+        } else {
+            bb.put(new byte[28]);
+        }
+        bb.flip();
+        return bb;
+    }
+
+    private static ByteBuffer untagged(short etherType, IpAddress srcIp, IpAddress dstIp) {
+        return frame(new short[0], new short[0], etherType, srcIp, dstIp, PROTO_UDP);
+    }
+
+    private static ByteBuffer truncate(ByteBuffer frame, int length) {
+        ByteBuffer copy = frame.duplicate();
+        copy.limit(copy.position() + length);
+        return copy;
+    }
+
+    /**
+     * Tests the fields of an untagged IPv4 frame.
+     */
+    @Test
+    public void testIp4Untagged() {
+        PacketHeader header = PacketHeader.parse(untagged(Ethernet.TYPE_IPV4, SRC_IP4, DST_IP4));
+        assertNotNull(header);
+        assertEquals(DST_MAC, header.dstMac());
+        assertEquals(SRC_MAC, header.srcMac());
+        assertEquals(VlanId.NONE, header.vlan());
+        assertEquals(Ethernet.TYPE_IPV4, header.etherType());
+        assertTrue(header.isIp4());
+        assertEquals(SRC_IP4, header.srcIp());
+        assertEquals(DST_IP4, header.dstIp());
+        assertEquals(PROTO_UDP, header.ipProto());
+        assertEquals(0x0a000102L, header.srcIpHi());
+        assertEquals(0L, header.srcIpLo());
+        assertEquals(0x0a000203L, header.dstIpHi());
+        assertEquals(0L, header.dstIpLo());
+    }
+
+    /**
+     * Tests the fields of an untagged IPv6 frame.
+     */
+    @Test
+    public void testIp6Untagged() {
+        PacketHeader header = PacketHeader.parse(untagged(Ethernet.TYPE_IPV6, SRC_IP6, DST_IP6));
+        assertNotNull(header);
+        assertFalse(header.isIp4());
+        assertEquals(Ethernet.TYPE_IPV6, header.etherType());
+        assertEquals(SRC_IP6, header.srcIp());
+        assertEquals(DST_IP6, header.dstIp());
+        assertEquals(PROTO_UDP, header.ipProto());
+        assertEquals(0x20010db800010000L, header.srcIpHi());
+        assertEquals(2L, header.srcIpLo());
+        assertEquals(0x20010db800020000L, header.dstIpHi());
+        assertEquals(3L, header.dstIpLo());
+    }
+
+    /**
+     * Tests that a vlan tag is skipped and its vlan id is read.
+     */
+    @Test
+    public void testVlanTagged() {
+        PacketHeader header = PacketHeader.parse(frame(new short[] {Ethernet.TYPE_VLAN}, new short[] {100},
+                                                       Ethernet.TYPE_IPV4, SRC_IP4, DST_IP4, PROTO_UDP));
+        assertNotNull(header);
+        assertEquals(VlanId.vlanId((short) 100), header.vlan());
+        assertEquals(SRC_IP4, header.srcIp());
+        assertEquals(DST_IP4, header.dstIp());
+    }
+
+    /**
+     * Tests that QinQ tags are skipped and the vlan id is of the inner most tag.
+     */
+    @Test
+    public void testQinQTagged() {
+        PacketHeader header = PacketHeader.parse(frame(new short[] {Ethernet.TYPE_QINQ, Ethernet.TYPE_VLAN},
+                                                       new short[] {200, 0x2000 | 100},
+                                                       Ethernet.TYPE_IPV6, SRC_IP6, DST_IP6, PROTO_UDP));
+        assertNotNull(header);
+        assertEquals(VlanId.vlanId((short) 100), header.vlan());
+        assertEquals(SRC_IP6, header.srcIp());
+        assertEquals(DST_IP6, header.dstIp());
+    }
+
+    /**
+     * Tests that more vlan tags than supported are not parsed.
+     */
+    @Test
+    public void testTooManyTags() {
+        assertNull(PacketHeader.parse(frame(new short[] {Ethernet.TYPE_QINQ, Ethernet.TYPE_QINQ, Ethernet.TYPE_VLAN},
+                                            new short[] {300, 200, 100},
+                                            Ethernet.TYPE_IPV4, SRC_IP4, DST_IP4, PROTO_UDP)));
+    }
+
+    /**
+     * Tests that non ip frames are not parsed.
+     */
+    @Test
+    public void testNonIp() {
+        assertNull(PacketHeader.parse(untagged(Ethernet.TYPE_ARP, SRC_IP4, DST_IP4)));
+        assertNull(PacketHeader.parse(null));
+    }
+
+    /**
+     * Tests that truncated frames are not parsed at any cut within the headers.
+     */
+    @Test
+    public void testTruncated() {
+        ByteBuffer ip4 = untagged(Ethernet.TYPE_IPV4, SRC_IP4, DST_IP4);
+        for (int length = 0; length < 14 + 20; length++) {
+            assertNull("ip4 length " + length, PacketHeader.parse(truncate(ip4, length)));
+        }
+        assertNotNull(PacketHeader.parse(truncate(ip4, 14 + 20)));
+
+        ByteBuffer ip6 = frame(new short[] {Ethernet.TYPE_VLAN}, new short[] {100},
+                               Ethernet.TYPE_IPV6, SRC_IP6, DST_IP6, PROTO_UDP);
+        for (int length = 0; length < 18 + 40; length++) {
+            assertNull("ip6 length " + length, PacketHeader.parse(truncate(ip6, length)));
+        }
+        assertNotNull(PacketHeader.parse(truncate(ip6, 18 + 40)));
+    }
+
+    /**
+     * Tests that the frame is read relative to the buffer position which is left unchanged.
+     */
+    @Test
+    public void testBufferPosition() {
+        ByteBuffer inner = untagged(Ethernet.TYPE_IPV4, SRC_IP4, DST_IP4);
+        ByteBuffer bb = ByteBuffer.allocate(inner.remaining() + 3);
+        bb.put(new byte[3]).put(inner);
+        bb.position(3);
+        PacketHeader header = PacketHeader.parse(bb);
+        assertNotNull(header);
+        assertEquals(DST_IP4, header.dstIp());
+        assertEquals(3, bb.position());
+    }
+}
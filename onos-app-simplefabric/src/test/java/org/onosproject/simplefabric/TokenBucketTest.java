@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onosproject.simplefabric;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for TokenBucket.
+ */
+public class TokenBucketTest {
+
+    private static final long T0 = 1000000L;
+
+    // takes tokens at now until denied and returns the number taken
+    private static int drain(TokenBucket bucket, long now) {
+        int taken = 0;
+        while (bucket.tryAcquire(now)) {
+            taken++;
+        }
+        return taken;
+    }
+
+    /**
+     * Tests that a new bucket admits a burst and denies then.
+     */
+    @Test
+    public void testBurst() {
+        TokenBucket bucket = new TokenBucket(100, 5, T0);
+        assertEquals(5, drain(bucket, T0));
+        assertFalse(bucket.tryAcquire(T0));
+    }
+
+    /**
+     * Tests that tokens are refilled at rate, including fractional tokens accumulated over time.
+     */
+    @Test
+    public void testRefill() {
+        TokenBucket bucket = new TokenBucket(100, 5, T0);  // a token per 10 msec
+        drain(bucket, T0);
+        assertFalse(bucket.tryAcquire(T0 + 9));
+        assertTrue(bucket.tryAcquire(T0 + 10));
+        assertFalse(bucket.tryAcquire(T0 + 10));
+        assertFalse(bucket.tryAcquire(T0 + 15));
+        assertTrue(bucket.tryAcquire(T0 + 20));
+        assertEquals(3, drain(bucket, T0 + 50));
+    }
+
+    /**
+     * Tests that refill is capped at burst after a long idle.
+     */
+    @Test
+    public void testRefillCappedAtBurst() {
+        TokenBucket bucket = new TokenBucket(100, 5, T0);
+        drain(bucket, T0);
+        assertEquals(5, drain(bucket, T0 + 60000));
+    }
+
+    /**
+     * Tests that time going backward neither refills nor breaks later refills.
+     */
+    @Test
+    public void testBackwardTime() {
+        TokenBucket bucket = new TokenBucket(100, 5, T0);
+        drain(bucket, T0);
+        assertFalse(bucket.tryAcquire(T0 - 1000));
+        assertTrue(bucket.tryAcquire(T0 + 10));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2017-present Open Networking Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.onosproject.simplefabric;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+import org.onlab.packet.IpAddress;
+import org.onlab.packet.MacAddress;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for VirtualGatewayTable.
+ */
+public class VirtualGatewayTableTest {
+
+    private static final IpAddress GW4_A = IpAddress.valueOf("10.0.1.1");
+    private static final IpAddress GW4_B = IpAddress.valueOf("10.0.2.1");
+    private static final IpAddress GW6 = IpAddress.valueOf("2001:db8::1");
+    private static final MacAddress MAC_A = MacAddress.valueOf("52:54:00:00:00:01");
+    private static final MacAddress MAC_B = MacAddress.valueOf("52:54:00:00:00:02");
+
+    /**
+     * Tests that an empty table has no gateway.
+     */
+    @Test
+    public void testEmpty() {
+        VirtualGatewayTable table = VirtualGatewayTable.of(ImmutableMap.of());
+        assertFalse(table.containsMac(MAC_A));
+        assertFalse(table.containsMac(0L));
+        assertNull(table.findMac(GW4_A));
+        assertNull(table.findMac(GW6));
+        assertNull(table.findMac4(0));
+    }
+
+    /**
+     * Tests gateway mac membership and gateway ip to mac lookups of both families.
+     */
+    @Test
+    public void testLookups() {
+        VirtualGatewayTable table = VirtualGatewayTable.of(ImmutableMap.of(GW4_A, MAC_A, GW4_B, MAC_B,
+                                                                           GW6, MAC_A));
+        assertTrue(table.containsMac(MAC_A));
+        assertTrue(table.containsMac(MAC_B.toLong()));
+        assertFalse(table.containsMac(MacAddress.valueOf("52:54:00:00:00:03")));
+        assertFalse(table.containsMac(MacAddress.BROADCAST));
+        assertEquals(MAC_A, table.findMac(GW4_A));
+        assertEquals(MAC_B, table.findMac(GW4_B));
+        assertEquals(MAC_A, table.findMac(GW6));
+        assertEquals(MAC_B, table.findMac4(GW4_B.getIp4Address().toInt()));
+        assertNull(table.findMac(IpAddress.valueOf("10.0.3.1")));
+        assertNull(table.findMac(IpAddress.valueOf("2001:db8::2")));
+    }
+
+    /**
+     * Tests the zero address and the all ones address which bound the slot key encoding.
+     */
+    @Test
+    public void testBoundaryKeys() {
+        IpAddress zeroIp = IpAddress.valueOf("0.0.0.0");
+        IpAddress onesIp = IpAddress.valueOf("255.255.255.255");
+        MacAddress zeroMac = MacAddress.valueOf(0L);
+        VirtualGatewayTable table = VirtualGatewayTable.of(ImmutableMap.of(zeroIp, zeroMac,
+                                                                           onesIp, MacAddress.BROADCAST));
+        assertTrue(table.containsMac(zeroMac));
+        assertTrue(table.containsMac(MacAddress.BROADCAST));
+        assertEquals(zeroMac, table.findMac(zeroIp));
+        assertEquals(MacAddress.BROADCAST, table.findMac4(0xffffffff));
+    }
+
+    /**
+     * Tests lookups on a table large enough to have colliding slots.
+     */
+    @Test
+    public void testManyGateways() {
+        Map<IpAddress, MacAddress> gateways = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            gateways.put(IpAddress.valueOf(0x0a000001 + (i << 8)), MacAddress.valueOf(0x525400000000L + i));
+        }
+        VirtualGatewayTable table = VirtualGatewayTable.of(gateways);
+        for (Map.Entry<IpAddress, MacAddress> entry : gateways.entrySet()) {
+            assertEquals(entry.getValue(), table.findMac(entry.getKey()));
+            assertTrue(table.containsMac(entry.getValue()));
+        }
+        assertNull(table.findMac(IpAddress.valueOf(0x0a000002)));
+        assertFalse(table.containsMac(0x525400000000L + 1000));
+    }
+}